@@ -8,6 +8,8 @@ import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
 import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
@@ -16,6 +18,8 @@ import java.util.List;
 
 @Entity
 @Table(name = "users")
+// loaded for every authenticated request, see UserRepository.findByUsername
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "user")
 @AllArgsConstructor
 @NoArgsConstructor
 @Getter
@@ -46,12 +50,6 @@ public class User implements UserDetails {
         return email;
     }
 
-    @OneToOne(mappedBy = "user")
-    private ForgotPassword forgotPassword;
-
-    @OneToOne(mappedBy = "user")
-    private RefreshToken refreshToken;
-
     @Enumerated(EnumType.STRING)
     private UserRole role;
 
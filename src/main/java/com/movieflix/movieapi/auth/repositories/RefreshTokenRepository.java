@@ -1,6 +1,7 @@
 package com.movieflix.movieapi.auth.repositories;
 
 import com.movieflix.movieapi.auth.entities.RefreshToken;
+import com.movieflix.movieapi.auth.entities.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 
 import java.util.Optional;
@@ -8,4 +9,6 @@ import java.util.Optional;
 public interface RefreshTokenRepository extends JpaRepository<RefreshToken, Integer> {
 
     Optional<RefreshToken> findByRefreshToken(String refreshToken);
+
+    Optional<RefreshToken> findByUser(User user);
 }
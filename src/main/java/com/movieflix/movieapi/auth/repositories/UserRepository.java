@@ -1,15 +1,25 @@
 package com.movieflix.movieapi.auth.repositories;
 
 import com.movieflix.movieapi.auth.entities.User;
+import jakarta.persistence.QueryHint;
 import jakarta.transaction.Transactional;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
 import java.util.Optional;
 
 public interface UserRepository extends JpaRepository<User, Integer> {
 
+    String USERNAME_CACHE_REGION = "userByUsername";
+
+    // the JWT filter looks the user up on every request, the cached id is resolved from the "user" region
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HibernateHints.HINT_CACHE_REGION, value = USERNAME_CACHE_REGION)
+    })
     Optional<User> findByUsername(String username);
 
     Optional<User> findByEmail(String email);
@@ -28,7 +28,7 @@ public class RefreshTokenService {
         User user = userRepository.findByUsername(username)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found with username: " + username));
 
-        RefreshToken refreshToken = user.getRefreshToken();
+        RefreshToken refreshToken = refreshTokenRepository.findByUser(user).orElse(null);
 
         if (refreshToken == null) {
             long refreshTokenValidity = 30 * 100000;
@@ -0,0 +1,68 @@
+package com.movieflix.movieapi.cache;
+
+import com.movieflix.movieapi.auth.repositories.UserRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.CacheRegionStatistics;
+import org.hibernate.stat.Statistics;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * Hits, misses, puts and hit ratio per region of the Hibernate second-level cache. Named and tagged like
+ * the metrics of the Caffeine caches in {@link MovieCache}, so both show up on the same dashboards.
+ */
+@Component
+public class HibernateCacheMetrics implements MeterBinder {
+
+    private final Statistics statistics;
+
+    public HibernateCacheMetrics(EntityManagerFactory entityManagerFactory) {
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Set<String> regions = new LinkedHashSet<>(Arrays.asList(statistics.getSecondLevelCacheRegionNames()));
+        //query regions are created on first use, which may be after the meters are bound
+        regions.add(UserRepository.USERNAME_CACHE_REGION);
+
+        for (String region : regions) {
+            counter(registry, "cache.gets", region, "hit", CacheRegionStatistics::getHitCount);
+            counter(registry, "cache.gets", region, "miss", CacheRegionStatistics::getMissCount);
+            FunctionCounter.builder("cache.puts", this, metrics -> metrics.count(region, CacheRegionStatistics::getPutCount))
+                    .tag("cache", region)
+                    .register(registry);
+            Gauge.builder("cache.hit.ratio", this, metrics -> metrics.hitRatio(region))
+                    .tag("cache", region)
+                    .register(registry);
+        }
+    }
+
+    private void counter(MeterRegistry registry, String name, String region, String result,
+                         ToLongFunction<CacheRegionStatistics> count) {
+        FunctionCounter.builder(name, this, metrics -> metrics.count(region, count))
+                .tag("cache", region)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private long count(String region, ToLongFunction<CacheRegionStatistics> count) {
+        CacheRegionStatistics regionStatistics = statistics.getCacheRegionStatistics(region);
+        return regionStatistics == null ? 0 : count.applyAsLong(regionStatistics);
+    }
+
+    private double hitRatio(String region) {
+        long hits = count(region, CacheRegionStatistics::getHitCount);
+        long requests = hits + count(region, CacheRegionStatistics::getMissCount);
+        return requests == 0 ? Double.NaN : (double) hits / requests;
+    }
+}
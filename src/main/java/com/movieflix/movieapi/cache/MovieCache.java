@@ -0,0 +1,159 @@
+package com.movieflix.movieapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.movieflix.movieapi.dto.CatalogVersion;
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MoviePageResponse;
+import com.movieflix.movieapi.dto.MovieVersion;
+import com.movieflix.movieapi.dto.SerializedMovie;
+import com.movieflix.movieapi.events.MovieChangedEvent;
+import com.movieflix.movieapi.utils.AppConstants;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache in front of the catalog reads of MovieServiceImpl.
+ * Entries are dropped after a write has been committed, see {@link #onMovieChanged(MovieChangedEvent)}.
+ */
+@Component
+public class MovieCache {
+
+    private static final String ALL_MOVIES_KEY = "all";
+
+    private static final String CATALOG_KEY = "catalog";
+
+    private final Cache<Integer, MovieDto> movies;
+
+    private final Cache<String, List<MovieDto>> movieLists;
+
+    private final Cache<PageKey, MoviePageResponse> moviePages;
+
+    // version stamps answer conditional requests without loading the movies themselves
+    private final Cache<Integer, MovieVersion> movieVersions;
+
+    private final Cache<String, CatalogVersion> catalogVersions;
+
+    // a few hundred popular movies make up most detail requests, so their JSON is kept ready to write
+    private final Cache<Integer, SerializedMovie> movieResponses;
+
+    // bumped by every write, see getCurrent
+    private final AtomicLong writeGeneration = new AtomicLong();
+
+    public MovieCache(@Value("${project.cache.movies.max-size}") long maxSize,
+                      @Value("${project.cache.movies.ttl}") Duration ttl,
+                      @Value("${project.cache.responses.max-size}") DataSize maxResponseSize,
+                      MeterRegistry meterRegistry) {
+        this.movies = newCache(maxSize, ttl);
+        this.movieLists = newCache(1, ttl);
+        this.moviePages = newCache(maxSize, ttl);
+        this.movieVersions = newCache(maxSize, ttl);
+        this.catalogVersions = newCache(1, ttl);
+        this.movieResponses = Caffeine.newBuilder()
+                .maximumWeight(maxResponseSize.toBytes())
+                .<Integer, SerializedMovie>weigher((movieId, response) -> response.size())
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, movies, "movies");
+        CaffeineCacheMetrics.monitor(meterRegistry, movieLists, "movieLists");
+        CaffeineCacheMetrics.monitor(meterRegistry, moviePages, "moviePages");
+        CaffeineCacheMetrics.monitor(meterRegistry, movieVersions, "movieVersions");
+        CaffeineCacheMetrics.monitor(meterRegistry, catalogVersions, "catalogVersions");
+        CaffeineCacheMetrics.monitor(meterRegistry, movieResponses, "movieResponses");
+        Gauge.builder("cache.weighted.size", movieResponses, cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .tag("cache", "movieResponses")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public MovieDto getMovie(Integer movieId, Function<Integer, MovieDto> loader) {
+        return movies.get(movieId, loader);
+    }
+
+    public List<MovieDto> getAllMovies(Supplier<List<MovieDto>> loader) {
+        return getCurrent(movieLists, ALL_MOVIES_KEY, key -> List.copyOf(loader.get()));
+    }
+
+    public MoviePageResponse getPage(PageKey pageKey, Supplier<MoviePageResponse> loader) {
+        return getCurrent(moviePages, pageKey, key -> loader.get());
+    }
+
+    public SerializedMovie getMovieResponse(Integer movieId, Function<Integer, SerializedMovie> loader) {
+        return movieResponses.get(movieId, loader);
+    }
+
+    public MovieVersion getMovieVersion(Integer movieId, Function<Integer, MovieVersion> loader) {
+        return movieVersions.get(movieId, loader);
+    }
+
+    public CatalogVersion getCatalogVersion(Supplier<CatalogVersion> loader) {
+        return getCurrent(catalogVersions, CATALOG_KEY, key -> loader.get());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        //before invalidating, so a load that misses the invalidation sees the new generation afterwards
+        writeGeneration.incrementAndGet();
+        Integer movieId = event.movieId();
+        movies.invalidate(movieId);
+        //after movies: a response serialized in between is built from the reloaded movie
+        movieResponses.invalidate(movieId);
+        movieVersions.invalidate(movieId);
+        movieLists.invalidateAll();
+        catalogVersions.invalidateAll();
+
+        switch (event.type()) {
+            // every page carries the total count, so inserts and deletes touch all of them
+            case CREATED, DELETED -> moviePages.invalidateAll();
+            // an update only shifts rows between pages if the sort key is not the id
+            case UPDATED -> moviePages.asMap().keySet().removeIf(pageKey ->
+                    !pageKey.isSortedById() || containsMovie(moviePages.getIfPresent(pageKey), movieId));
+        }
+    }
+
+    // invalidateAll() and removeIf() skip entries that are still loading, so one that read the catalog before a
+    // write committed could outlive the invalidation; it is dropped here instead. invalidate(key) waits for the load.
+    private <K, V> V getCurrent(Cache<K, V> cache, K key, Function<? super K, ? extends V> loader) {
+        long generation = writeGeneration.get();
+        V value = cache.get(key, loader);
+        if (writeGeneration.get() != generation) {
+            cache.asMap().remove(key, value);
+        }
+        return value;
+    }
+
+    private static boolean containsMovie(MoviePageResponse page, Integer movieId) {
+        return page != null && page.movieDtos().stream().anyMatch(dto -> movieId.equals(dto.getMovieId()));
+    }
+
+    private static <K, V> Cache<K, V> newCache(long maxSize, Duration ttl) {
+        return Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * Identifies one cached page; sortBy and dir are null for the unsorted pagination endpoint.
+     */
+    public record PageKey(Integer pageNumber, Integer pageSize, String sortBy, String dir) {
+
+        boolean isSortedById() {
+            return sortBy == null || AppConstants.SORT_BY.equals(sortBy);
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.movieflix.movieapi.cache;
+
+import com.movieflix.movieapi.events.MovieChangedEvent;
+import com.movieflix.movieapi.repositories.MovieRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate number of movies for responses that show a total without counting per request.
+ * It is recounted in the background and adjusted for the writes of this instance in between.
+ */
+@Slf4j
+@Component
+public class MovieCount {
+
+    private static final long UNKNOWN = -1;
+
+    private final MovieRepository movieRepository;
+
+    private final AtomicLong count = new AtomicLong(UNKNOWN);
+
+    public MovieCount(MovieRepository movieRepository) {
+        this.movieRepository = movieRepository;
+    }
+
+    /**
+     * Returns the approximate count, or null before the first count has finished.
+     */
+    public Long get() {
+        long current = count.get();
+        return current == UNKNOWN ? null : current;
+    }
+
+    @Scheduled(fixedDelayString = "${project.count.refresh-interval}")
+    public void refresh() {
+        long start = System.currentTimeMillis();
+        count.set(movieRepository.count());
+        log.debug("Counted {} movies in {} ms", count.get(), System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        switch (event.type()) {
+            case CREATED -> count.updateAndGet(current -> current == UNKNOWN ? UNKNOWN : current + 1);
+            case DELETED -> count.updateAndGet(current -> current == UNKNOWN ? UNKNOWN : Math.max(0, current - 1));
+            case UPDATED -> {
+                //the number of movies stays the same
+            }
+        }
+    }
+}
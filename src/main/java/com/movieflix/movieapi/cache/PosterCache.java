@@ -0,0 +1,136 @@
+package com.movieflix.movieapi.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.movieflix.movieapi.exceptions.PosterNotFoundException;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.function.Function;
+
+/**
+ * The posters and thumbnails asked for most, by requested name and width, so a hit neither looks them up on
+ * disk nor reads them. The content is held off the heap in direct buffers, bounded by their total size; Caffeine
+ * keeps the entries that are asked for most often and recently.
+ * <p>
+ * Files larger than project.cache.posters.max-file-size are only remembered by their location and keep being
+ * sent with sendfile, which beats copying them out of memory. Direct buffers count against
+ * -XX:MaxDirectMemorySize, which defaults to the maximum heap size.
+ */
+@Component
+public class PosterCache {
+
+    // what an entry costs besides its content, so entries without content are bounded too
+    private static final int ENTRY_OVERHEAD = 256;
+
+    private final Cache<PosterKey, CachedPoster> posters;
+
+    private final long maxFileSize;
+
+    public PosterCache(@Value("${project.cache.posters.max-size}") DataSize maxSize,
+                       @Value("${project.cache.posters.max-file-size}") DataSize maxFileSize,
+                       @Value("${project.cache.posters.ttl}") Duration ttl,
+                       MeterRegistry meterRegistry) {
+        this.maxFileSize = maxFileSize.toBytes();
+        this.posters = Caffeine.newBuilder()
+                .maximumWeight(maxSize.toBytes())
+                .<PosterKey, CachedPoster>weigher((key, poster) -> ENTRY_OVERHEAD + poster.size())
+                // bounds how long another instance serves a poster deleted through this one
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, posters, "posters");
+        Gauge.builder("cache.weighted.size", posters, cache -> cache.policy().eviction().orElseThrow().weightedSize().orElse(0))
+                .tag("cache", "posters")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        Gauge.builder("cache.hit.ratio", posters, cache -> cache.stats().hitRate())
+                .tag("cache", "posters")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Returns the cached poster for the name and width, null for no width, loading it with the file the loader
+     * resolves them to.
+     */
+    public CachedPoster getPoster(String fileName, Integer width, PosterResolver resolver) {
+        PosterKey key = new PosterKey(fileName, width);
+        Function<PosterKey, CachedPoster> loader = k -> {
+            try {
+                return load(resolver.resolve());
+            } catch (NoSuchFileException e) {
+                throw new PosterNotFoundException("File not found: " + fileName);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+
+        CachedPoster poster = posters.get(key, loader);
+        //only the location of a large poster is cached, its file may have been deleted since, e.g. by another instance
+        if (poster.content() == null && !Files.exists(poster.file())) {
+            posters.asMap().remove(key, poster);
+            poster = posters.get(key, loader);
+        }
+        return poster;
+    }
+
+    /**
+     * Drops the poster and its thumbnails, after their files were deleted.
+     */
+    public void evict(String fileName) {
+        posters.asMap().keySet().removeIf(key -> key.fileName().equals(fileName));
+    }
+
+    // Caffeine applies weights and evictions in the background, this applies the pending ones now
+    void cleanUp() {
+        posters.cleanUp();
+    }
+
+    private CachedPoster load(Path file) throws IOException {
+        long size = Files.size(file);
+        if (size > maxFileSize) {
+            return new CachedPoster(file, null);
+        }
+
+        ByteBuffer content = ByteBuffer.allocateDirect((int) size);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            while (content.hasRemaining() && channel.read(content) >= 0) {
+                //read until full or the end of the file
+            }
+        }
+        content.flip();
+        return new CachedPoster(file, content.asReadOnlyBuffer());
+    }
+
+    @FunctionalInterface
+    public interface PosterResolver {
+        Path resolve() throws IOException;
+    }
+
+    private record PosterKey(String fileName, Integer width) {
+    }
+
+    /**
+     * A poster file and, if it is small enough, its content. The buffer is shared, read it through a duplicate.
+     */
+    public record CachedPoster(Path file, ByteBuffer content) {
+
+        int size() {
+            return content == null ? 0 : content.capacity();
+        }
+    }
+}
@@ -1,26 +1,45 @@
 package com.movieflix.movieapi.controllers;
 
+import com.movieflix.movieapi.cache.PosterCache;
+import com.movieflix.movieapi.cache.PosterCache.CachedPoster;
+import com.movieflix.movieapi.exceptions.PosterNotFoundException;
 import com.movieflix.movieapi.services.FileService;
+import com.movieflix.movieapi.services.ThumbnailService;
+import com.movieflix.movieapi.utils.FileTransfer;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.MediaType;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
-import org.springframework.util.StreamUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.ServletWebRequest;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
-import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.time.Duration;
 
 @RestController
 @RequestMapping("/file/")
 @CrossOrigin(origins = "*")
 public class FileController {
 
+    private static final String IMMUTABLE = CacheControl.maxAge(Duration.ofDays(365)).cachePublic().immutable()
+            .getHeaderValue();
+
     private final FileService fileService;
 
-    public FileController(FileService fileService) {
+    private final ThumbnailService thumbnailService;
+
+    private final PosterCache posterCache;
+
+    public FileController(FileService fileService, ThumbnailService thumbnailService, PosterCache posterCache) {
         this.fileService = fileService;
+        this.thumbnailService = thumbnailService;
+        this.posterCache = posterCache;
     }
 
     @Value("${project.poster}")
@@ -28,14 +47,51 @@ public class FileController {
 
     @PostMapping("/upload")
     public ResponseEntity<String> uploadFileHandler(@RequestPart MultipartFile file) throws IOException {
-        String uploadedFileName = fileService.uploadFile(path, file);
+        //not the poster of a movie, nothing would drop a reference to it
+        String uploadedFileName = fileService.uploadStandaloneFile(path, file);
         return ResponseEntity.ok("File uploaded : " + uploadedFileName);
     }
 
     @GetMapping(value = "/{fileName}")
-    public void serveFileHandler(@PathVariable String fileName, HttpServletResponse response) throws IOException {
-        InputStream resourceFile = fileService.getResourceFile(path, fileName);
-        response.setContentType(MediaType.IMAGE_PNG_VALUE);
-        StreamUtils.copy(resourceFile, response.getOutputStream());
+    public void serveFileHandler(@PathVariable String fileName,
+                                 @RequestParam(name = "w", required = false) Integer width,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        //widths are rounded to the configured ones, so arbitrary values cannot fill the disk with thumbnails
+        Integer thumbnailWidth = width == null ? null : thumbnailService.thumbnailWidth(width);
+
+        //a content hashed name never changes its content, so a matching If-None-Match needs no look at the disk
+        String eTag = fileService.getETag(fileName);
+        if (eTag != null && thumbnailWidth != null) {
+            eTag = eTag.substring(0, eTag.length() - 1) + "-w" + thumbnailWidth + '"';
+        }
+        if (eTag != null && new ServletWebRequest(request, response).checkNotModified(eTag)) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+            return;
+        }
+
+        CachedPoster poster;
+        try {
+            poster = posterCache.getPoster(fileName, thumbnailWidth, () -> {
+                Path resourceFile = fileService.getResourceFile(path, fileName);
+                return thumbnailWidth == null ? resourceFile : thumbnailService.getThumbnail(resourceFile, thumbnailWidth);
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        if (eTag != null) {
+            response.setHeader(HttpHeaders.CACHE_CONTROL, IMMUTABLE);
+        }
+        if (poster.content() != null) {
+            FileTransfer.send(poster.content(), poster.file().getFileName().toString(), request, response);
+        } else {
+            try {
+                FileTransfer.send(poster.file(), request, response);
+            } catch (NoSuchFileException e) {
+                //deleted right after the cache looked, nothing has been written yet
+                response.reset();
+                posterCache.evict(fileName);
+                throw new PosterNotFoundException("File not found: " + fileName);
+            }
+        }
     }
 }
\ No newline at end of file
@@ -1,30 +1,75 @@
 package com.movieflix.movieapi.controllers;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movieflix.movieapi.dto.CatalogVersion;
+import com.movieflix.movieapi.dto.MovieCursorPageResponse;
+import com.movieflix.movieapi.dto.MovieChangesResponse;
 import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieExport;
+import com.movieflix.movieapi.dto.MovieFacetResponse;
+import com.movieflix.movieapi.dto.MovieFilter;
+import com.movieflix.movieapi.dto.MovieImportResponse;
 import com.movieflix.movieapi.dto.MoviePageResponse;
+import com.movieflix.movieapi.dto.MovieSliceResponse;
+import com.movieflix.movieapi.dto.MovieStats;
+import com.movieflix.movieapi.dto.MovieSuggestion;
+import com.movieflix.movieapi.dto.MovieVersion;
+import com.movieflix.movieapi.dto.SerializedMovie;
 import com.movieflix.movieapi.entities.Movie;
 import com.movieflix.movieapi.exceptions.EmptyFileException;
+import com.movieflix.movieapi.exceptions.UnsupportedExportFormatException;
+import com.movieflix.movieapi.services.MovieImportService;
 import com.movieflix.movieapi.services.MovieService;
 import com.movieflix.movieapi.utils.AppConstants;
+import com.movieflix.movieapi.utils.CsvUtils;
+import com.movieflix.movieapi.utils.MovieSort;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 @RestController
 @RequestMapping("/api/v1/movie")
 public class MovieController {
 
+    // lets clients keep conditional responses and revalidate them; Spring Security sends no-store otherwise
+    private static final CacheControl REVALIDATE = CacheControl.noCache().cachePrivate();
+
+    private static final String EXPORT_CSV_HEADER = "movieId,releaseYear,title,genre,director,studio,poster,updatedAt,movieCast";
+
     private final MovieService movieService;
+    private final MovieImportService movieImportService;
+    private final ObjectMapper objectMapper;
+
+    @Value("${project.cache.responses.gzip}")
+    private boolean gzipResponses;
 
-    public MovieController(MovieService movieService) {
+    public MovieController(MovieService movieService, MovieImportService movieImportService, ObjectMapper objectMapper) {
         this.movieService = movieService;
+        this.movieImportService = movieImportService;
+        this.objectMapper = objectMapper;
     }
 
     @PreAuthorize("hasAuthority('ADMIN')")
@@ -39,10 +84,75 @@ public class MovieController {
         return new ResponseEntity<>(movieService.addMovie(dto, file), HttpStatus.CREATED);
     }
 
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PostMapping("/admin/import")
+    public ResponseEntity<MovieImportResponse> importMoviesHandler(@RequestPart MultipartFile movies,
+                                                                   @RequestPart MultipartFile posters) throws IOException, EmptyFileException {
+
+        if (movies.isEmpty()) {
+            throw new EmptyFileException("File is empty! Please, upload a file!");
+        }
+        return ResponseEntity.ok(movieImportService.importMovies(movies, posters));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @GetMapping("/admin/export")
+    public ResponseEntity<StreamingResponseBody> exportMoviesHandler(
+            @RequestParam(defaultValue = "ndjson", required = false) String format,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant updatedSince) {
+
+        boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            throw new UnsupportedExportFormatException("Export format must be csv or ndjson!");
+        }
+
+        StreamingResponseBody body = outputStream -> {
+            try (Writer writer = new BufferedWriter(new OutputStreamWriter(new GZIPOutputStream(outputStream), StandardCharsets.UTF_8))) {
+                if (csv) {
+                    writer.write(EXPORT_CSV_HEADER);
+                    writer.write('\n');
+                }
+                movieService.exportMovies(updatedSince, movie -> {
+                    try {
+                        writer.write(csv ? toCsvLine(movie) : objectMapper.writeValueAsString(movie));
+                        writer.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            }
+        };
+
+        String fileName = csv ? "movies.csv.gz" : "movies.ndjson.gz";
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType("application/gzip"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(fileName).build().toString())
+                .body(body);
+    }
+
     @GetMapping("/{movieId}")
-    public ResponseEntity<MovieDto> getMovieHandler(@PathVariable Integer movieId) throws IOException {
+    public ResponseEntity<byte[]> getMovieHandler(@PathVariable Integer movieId, WebRequest webRequest) throws IOException {
+
+        //answer conditional requests from the cached version stamp, before the movie itself is loaded
+        MovieVersion version = movieService.getMovieVersion(movieId);
 
-        return ResponseEntity.ok(movieService.getMovie(movieId));
+        //the gzipped body is a different representation, so it gets an ETag of its own
+        boolean gzip = gzipResponses && acceptsGzip(webRequest.getHeader(HttpHeaders.ACCEPT_ENCODING));
+        String eTag = "\"" + movieId + "-" + version.version() + (gzip ? "-gzip" : "") + "\"";
+        if (webRequest.checkNotModified(eTag, toEpochMilli(version.updatedAt()))) {
+            return null;
+        }
+
+        //cached bytes of the MovieDto, written to the response as they are
+        SerializedMovie movie = movieService.getSerializedMovie(movieId);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .cacheControl(REVALIDATE)
+                .contentType(MediaType.APPLICATION_JSON)
+                .varyBy(HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(movie.gzip());
+        }
+        return response.body(movie.json());
     }
 
     @GetMapping("/all")
@@ -51,6 +161,20 @@ public class MovieController {
         return ResponseEntity.ok(movieService.getAllMovies());
     }
 
+    @GetMapping(value = "/all", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> streamAllMovieHandler() {
+
+        StreamingResponseBody body = outputStream -> movieService.streamAllMovies(movieDto -> {
+            try {
+                outputStream.write(objectMapper.writeValueAsBytes(movieDto));
+                outputStream.write('\n');
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
     @PreAuthorize("hasAuthority('ADMIN')")
     @PutMapping("/update/{movieId}")
     public ResponseEntity<MovieDto> updateMovieHandler(@PathVariable Integer movieId, @RequestPart String movieDto, @RequestPart MultipartFile file) throws IOException {
@@ -62,6 +186,25 @@ public class MovieController {
         return ResponseEntity.ok(movieService.updateMovie(movieId, dto, file));
     }
 
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PatchMapping(value = "/{movieId}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<MovieDto> patchMovieHandler(@PathVariable Integer movieId, @RequestBody JsonNode patch) throws IOException {
+        return ResponseEntity.ok(movieService.patchMovie(movieId, patch, null));
+    }
+
+    @PreAuthorize("hasAuthority('ADMIN')")
+    @PatchMapping(value = "/{movieId}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<MovieDto> patchMovieWithPosterHandler(@PathVariable Integer movieId,
+                                                                @RequestPart(required = false) String movieDto,
+                                                                @RequestPart(required = false) MultipartFile file) throws IOException {
+
+        if (file != null && file.isEmpty()) {
+            file = null;
+        }
+        JsonNode patch = movieDto != null ? objectMapper.readTree(movieDto) : objectMapper.createObjectNode();
+        return ResponseEntity.ok(movieService.patchMovie(movieId, patch, file));
+    }
+
     @PreAuthorize("hasAuthority('ADMIN')")
     @DeleteMapping("/delete/{movieId}")
     public ResponseEntity<String> deleteMovieHandler(@PathVariable Integer movieId) throws IOException {
@@ -71,9 +214,13 @@ public class MovieController {
     @GetMapping("/allMoviesPage")
     public ResponseEntity<MoviePageResponse> getMoviesWithPagination(
             @RequestParam(defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
-            @RequestParam(defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize) {
+            @RequestParam(defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
+            WebRequest webRequest) {
 
-        return ResponseEntity.ok(movieService.getAllMoviesWithPagination(pageNumber, pageSize));
+        if (webRequest.checkNotModified(pageETag(pageNumber, pageSize, null, null))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE).body(movieService.getAllMoviesWithPagination(pageNumber, pageSize));
     }
 
     @GetMapping("/allMoviesPageSort")
@@ -81,13 +228,130 @@ public class MovieController {
             @RequestParam(defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
             @RequestParam(defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
             @RequestParam(defaultValue = AppConstants.SORT_BY, required = false) String sortBy,
+            @RequestParam(defaultValue = AppConstants.SORT_DIR, required = false) String dir,
+            WebRequest webRequest) {
+
+        //checked first, an ETag per unknown field or direction would only make clients cache errors
+        MovieSort movieSort = MovieSort.of(sortBy, dir);
+        if (webRequest.checkNotModified(pageETag(pageNumber, pageSize, movieSort.sortBy(), movieSort.dir()))) {
+            return null;
+        }
+        return ResponseEntity.ok().cacheControl(REVALIDATE)
+                .body(movieService.getAllMoviesWithPaginationAndSorting(pageNumber, pageSize, sortBy, dir));
+    }
+
+    @GetMapping("/allMoviesSlice")
+    public ResponseEntity<MovieSliceResponse> getMoviesWithSlice(
+            @RequestParam(defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
+            @RequestParam(defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
+            @RequestParam(defaultValue = AppConstants.SORT_BY, required = false) String sortBy,
+            @RequestParam(defaultValue = AppConstants.SORT_DIR, required = false) String dir) {
+
+        return ResponseEntity.ok(movieService.getAllMoviesWithSlice(pageNumber, pageSize, sortBy, dir));
+    }
+
+    @GetMapping("/allMoviesCursor")
+    public ResponseEntity<MovieCursorPageResponse> getMoviesWithCursor(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize,
+            @RequestParam(defaultValue = AppConstants.SORT_BY, required = false) String sortBy,
             @RequestParam(defaultValue = AppConstants.SORT_DIR, required = false) String dir) {
 
-        return ResponseEntity.ok(movieService.getAllMoviesWithPaginationAndSorting(pageNumber, pageSize, sortBy, dir));
+        return ResponseEntity.ok(movieService.getAllMoviesWithCursor(cursor, pageSize, sortBy, dir));
+    }
+
+    @GetMapping("/search")
+    public ResponseEntity<List<MovieDto>> searchMoviesHandler(
+            @RequestParam String q,
+            @RequestParam(defaultValue = AppConstants.SEARCH_LIMIT, required = false) Integer limit) {
+
+        return ResponseEntity.ok(movieService.searchMovies(q, limit));
+    }
+
+    @GetMapping("/suggest")
+    public ResponseEntity<List<MovieSuggestion>> suggestMoviesHandler(
+            @RequestParam String prefix,
+            @RequestParam(defaultValue = AppConstants.SUGGEST_LIMIT, required = false) Integer limit) {
+
+        return ResponseEntity.ok(movieService.suggestMovies(prefix, limit));
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<MovieStats> getMovieStatsHandler() {
+        return ResponseEntity.ok(movieService.getMovieStats());
+    }
+
+    @GetMapping("/changes")
+    public ResponseEntity<MovieChangesResponse> getChangesHandler(
+            @RequestParam(defaultValue = AppConstants.CHANGES_SINCE, required = false) Long since,
+            @RequestParam(defaultValue = AppConstants.CHANGES_LIMIT, required = false) Integer limit) {
+
+        return ResponseEntity.ok(movieService.getChanges(since, limit));
+    }
+
+    @GetMapping("/{movieId}/similar")
+    public ResponseEntity<List<MovieDto>> getSimilarMoviesHandler(
+            @PathVariable Integer movieId,
+            @RequestParam(defaultValue = AppConstants.SIMILAR_LIMIT, required = false) Integer limit) {
+
+        return ResponseEntity.ok(movieService.getSimilarMovies(movieId, limit));
+    }
+
+    @GetMapping("/filter")
+    public ResponseEntity<MovieFacetResponse> filterMoviesHandler(
+            @RequestParam(required = false) String genre,
+            @RequestParam(required = false) Integer yearFrom,
+            @RequestParam(required = false) Integer yearTo,
+            @RequestParam(required = false) String studio,
+            @RequestParam(defaultValue = AppConstants.PAGE_NUMBER, required = false) Integer pageNumber,
+            @RequestParam(defaultValue = AppConstants.PAGE_SIZE, required = false) Integer pageSize) {
+
+        MovieFilter filter = new MovieFilter(genre, yearFrom, yearTo, studio);
+        return ResponseEntity.ok(movieService.getMoviesWithFacets(filter, pageNumber, pageSize));
+    }
+
+    /**
+     * A page changes whenever the catalog does, so its ETag is derived from the catalog version and the page
+     * parameters. Pages carry no Last-Modified: a delete leaves no update time behind to compare against.
+     */
+    private String pageETag(Integer pageNumber, Integer pageSize, String sortBy, String dir) {
+        CatalogVersion catalog = movieService.getCatalogVersion();
+        String stamp = catalog.movieCount() + ":" + catalog.lastUpdatedAt() + ":" + pageNumber + ":" + pageSize + ":" + sortBy + ":" + dir;
+        return "\"" + DigestUtils.md5DigestAsHex(stamp.getBytes(StandardCharsets.UTF_8)) + "\"";
+    }
+
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.trim().split(";");
+            if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                //"gzip;q=0" explicitly refuses it
+                return parts.length == 1 || !parts[1].trim().matches("q=0(\\.0*)?");
+            }
+        }
+        return false;
+    }
+
+    private static long toEpochMilli(Instant instant) {
+        return instant != null ? instant.toEpochMilli() : -1;
+    }
+
+    private static String toCsvLine(MovieExport movie) {
+        return String.join(",",
+                CsvUtils.escape(movie.movieId()),
+                CsvUtils.escape(movie.releaseYear()),
+                CsvUtils.escape(movie.title()),
+                CsvUtils.escape(movie.genre()),
+                CsvUtils.escape(movie.director()),
+                CsvUtils.escape(movie.studio()),
+                CsvUtils.escape(movie.poster()),
+                CsvUtils.escape(movie.updatedAt()),
+                CsvUtils.escape(String.join(CsvUtils.LIST_SEPARATOR, movie.movieCast().stream().sorted().toList())));
     }
 
     private MovieDto convertToMovieDto(String movieDtoObj) throws JsonProcessingException {
-        ObjectMapper objectMapper = new ObjectMapper();
         return objectMapper.readValue(movieDtoObj, MovieDto.class);
     }
 }
@@ -0,0 +1,54 @@
+package com.movieflix.movieapi.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The primary datasource of spring.datasource plus one pool per url in project.datasource.replica-urls,
+ * which share its credentials and its spring.datasource.hikari settings. Without replica urls every
+ * transaction goes to the primary.
+ */
+@Configuration
+public class DataSourceConfig {
+
+    @Bean
+    public DataSource dataSource(DataSourceProperties properties, Environment environment,
+                                 @Value("${project.datasource.replica-urls}") List<String> replicaUrls,
+                                 @Value("${project.datasource.read-your-writes-window}") Duration readYourWritesWindow) {
+
+        //the pools are built here rather than by the auto-configuration, which would have bound these
+        Binder binder = Binder.get(environment);
+        HikariDataSource primary = pool(properties, binder, properties.determineUrl(), "primary");
+
+        List<DataSource> replicas = new ArrayList<>();
+        for (int i = 0; i < replicaUrls.size(); i++) {
+            replicas.add(pool(properties, binder, replicaUrls.get(i), "replica-" + i));
+        }
+
+        return new LazyConnectionDataSourceProxy(
+                new ReadWriteRoutingDataSource(primary, replicas, readYourWritesWindow, Clock.systemUTC()));
+    }
+
+    private static HikariDataSource pool(DataSourceProperties properties, Binder binder, String url, String poolName) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+                .type(HikariDataSource.class)
+                .url(url)
+                .build();
+        binder.bind("spring.datasource.hikari", Bindable.ofInstance(dataSource));
+        dataSource.setPoolName(poolName);
+        return dataSource;
+    }
+}
@@ -0,0 +1,84 @@
+package com.movieflix.movieapi.datasource;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends read-only transactions to the replicas, in turn, and everything else to the primary.
+ * <p>
+ * For a while after a write transaction has completed, reads go to the primary too: a replica may not have
+ * caught up yet, and a stale row read right after a write would be put back into the caches the write just
+ * cleared. Writes outside of a Spring managed transaction are not tracked.
+ * <p>
+ * The transaction is only known once it has started, so this must sit behind a
+ * {@link org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy} that fetches the connection
+ * at the first statement.
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+    private static final String REPLICA = "replica-";
+
+    private final int replicaCount;
+
+    private final Duration readYourWritesWindow;
+
+    private final Clock clock;
+
+    private final AtomicInteger nextReplica = new AtomicInteger();
+
+    private final AtomicReference<Instant> lastWriteCompletedAt = new AtomicReference<>(Instant.MIN);
+
+    public ReadWriteRoutingDataSource(DataSource primary, List<DataSource> replicas, Duration readYourWritesWindow, Clock clock) {
+        this.replicaCount = replicas.size();
+        this.readYourWritesWindow = readYourWritesWindow;
+        this.clock = clock;
+
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            //connections outside of a transaction, e.g. the proxy and Hibernate reading connection defaults
+            return PRIMARY;
+        }
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            markWrite();
+            return PRIMARY;
+        }
+        if (replicaCount == 0 || clock.instant().isBefore(lastWriteCompletedAt.get().plus(readYourWritesWindow))) {
+            return PRIMARY;
+        }
+        return REPLICA + Math.floorMod(nextReplica.getAndIncrement(), replicaCount);
+    }
+
+    private void markWrite() {
+        lastWriteCompletedAt.set(clock.instant());
+        //the window starts over when the transaction is done, however long it took
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                lastWriteCompletedAt.set(clock.instant());
+            }
+        });
+    }
+}
@@ -0,0 +1,10 @@
+package com.movieflix.movieapi.dto;
+
+import java.time.Instant;
+
+/**
+ * Changes whenever a movie is added, updated or deleted: inserts and updates move the latest update time,
+ * deletes lower the count.
+ */
+public record CatalogVersion(long movieCount, Instant lastUpdatedAt) {
+}
@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.dto;
+
+/**
+ * One row of the movie_cast table.
+ */
+public record MovieCastMember(Integer movieId, String name) {
+}
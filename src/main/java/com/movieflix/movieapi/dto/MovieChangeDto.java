@@ -0,0 +1,15 @@
+package com.movieflix.movieapi.dto;
+
+import com.movieflix.movieapi.events.MovieChangeType;
+
+import java.time.Instant;
+
+/**
+ * One entry of the change feed. movie is the current state of the movie, null once it has been deleted.
+ */
+public record MovieChangeDto(Long changeId,
+                             MovieChangeType type,
+                             Integer movieId,
+                             Instant changedAt,
+                             MovieDto movie) {
+}
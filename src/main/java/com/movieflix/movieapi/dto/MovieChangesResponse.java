@@ -0,0 +1,12 @@
+package com.movieflix.movieapi.dto;
+
+import java.util.List;
+
+/**
+ * Changes after the requested token, oldest first. nextToken is passed as since to get the following ones;
+ * it stays the same while nothing has changed.
+ */
+public record MovieChangesResponse(List<MovieChangeDto> changes,
+                                   Long nextToken,
+                                   boolean hasMore) {
+}
@@ -0,0 +1,9 @@
+package com.movieflix.movieapi.dto;
+
+import java.util.List;
+
+public record MovieCursorPageResponse(List<MovieDto> movieDtos,
+                                      Integer pageSize,
+                                      String nextCursor,
+                                      boolean isLast) {
+}
@@ -0,0 +1,15 @@
+package com.movieflix.movieapi.dto;
+
+import java.time.Instant;
+import java.util.Set;
+
+public record MovieExport(Integer movieId,
+                          Integer releaseYear,
+                          String title,
+                          String genre,
+                          String director,
+                          String studio,
+                          String poster,
+                          Instant updatedAt,
+                          Set<String> movieCast) {
+}
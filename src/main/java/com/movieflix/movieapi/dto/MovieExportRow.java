@@ -0,0 +1,14 @@
+package com.movieflix.movieapi.dto;
+
+import java.time.Instant;
+
+public record MovieExportRow(Integer movieId,
+                             Integer releaseYear,
+                             String title,
+                             String genre,
+                             String director,
+                             String studio,
+                             String poster,
+                             Instant updatedAt,
+                             String castMember) {
+}
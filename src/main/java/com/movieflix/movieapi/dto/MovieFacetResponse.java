@@ -0,0 +1,13 @@
+package com.movieflix.movieapi.dto;
+
+import java.util.Map;
+
+/**
+ * A page of filtered movies plus, per facet, the number of matching movies for each value. The counts of a
+ * facet ignore that facet's own criterion, so clients can show how many results every alternative would give.
+ */
+public record MovieFacetResponse(MoviePageResponse movies,
+                                 Map<String, Long> genre,
+                                 Map<Integer, Long> releaseYear,
+                                 Map<String, Long> studio) {
+}
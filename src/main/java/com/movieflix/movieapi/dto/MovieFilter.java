@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.dto;
+
+/**
+ * Criteria of GET /api/v1/movie/filter; a null field does not restrict the result.
+ */
+public record MovieFilter(String genre, Integer yearFrom, Integer yearTo, String studio) {
+}
@@ -0,0 +1,4 @@
+package com.movieflix.movieapi.dto;
+
+public record MovieImportError(int row, String message) {
+}
@@ -0,0 +1,8 @@
+package com.movieflix.movieapi.dto;
+
+import java.util.List;
+
+public record MovieImportResponse(int totalRows,
+                                  int importedRows,
+                                  List<MovieImportError> errors) {
+}
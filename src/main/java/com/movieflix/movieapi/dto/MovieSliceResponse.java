@@ -0,0 +1,14 @@
+package com.movieflix.movieapi.dto;
+
+import java.util.List;
+
+/**
+ * A page without an exact count: hasNext comes from reading one row past the page, the total is
+ * approximate and null until it has been counted once.
+ */
+public record MovieSliceResponse(List<MovieDto> movieDtos,
+                                 Integer pageNumber,
+                                 Integer pageSize,
+                                 boolean hasNext,
+                                 Long approximateTotalElements) {
+}
@@ -0,0 +1,12 @@
+package com.movieflix.movieapi.dto;
+
+import java.util.Map;
+
+/**
+ * Number of movies in the whole catalog and per genre, release year and studio, largest counts first.
+ */
+public record MovieStats(long totalMovies,
+                         Map<String, Long> genre,
+                         Map<Integer, Long> releaseYear,
+                         Map<String, Long> studio) {
+}
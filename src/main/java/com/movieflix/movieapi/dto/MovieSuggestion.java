@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.dto;
+
+/**
+ * One autocomplete entry: a movie title (with its movieId) or a cast member's name (movieId is null).
+ */
+public record MovieSuggestion(String text, String field, Integer movieId) {
+}
@@ -0,0 +1,13 @@
+package com.movieflix.movieapi.dto;
+
+/**
+ * Read-only projection of the movie table, selected directly into this record without loading a Movie entity.
+ */
+public record MovieSummary(Integer movieId,
+                           Integer releaseYear,
+                           String title,
+                           String genre,
+                           String director,
+                           String studio,
+                           String poster) {
+}
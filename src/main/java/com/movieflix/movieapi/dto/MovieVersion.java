@@ -0,0 +1,6 @@
+package com.movieflix.movieapi.dto;
+
+import java.time.Instant;
+
+public record MovieVersion(Long version, Instant updatedAt) {
+}
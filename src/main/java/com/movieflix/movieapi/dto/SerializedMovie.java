@@ -0,0 +1,11 @@
+package com.movieflix.movieapi.dto;
+
+/**
+ * The JSON of a MovieDto as sent to clients, plus its gzip-compressed form when compression is enabled.
+ */
+public record SerializedMovie(byte[] json, byte[] gzip) {
+
+    public int size() {
+        return json.length + (gzip != null ? gzip.length : 0);
+    }
+}
@@ -3,16 +3,55 @@ package com.movieflix.movieapi.entities;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.NotBlank;
 import lombok.*;
+import org.hibernate.annotations.Cache;
+import org.hibernate.annotations.CacheConcurrencyStrategy;
+import org.hibernate.annotations.DynamicUpdate;
+import org.hibernate.annotations.UpdateTimestamp;
 
+import java.time.Instant;
+import java.util.List;
 import java.util.Set;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 @Entity
-@Table(name = "movie")
+// updates, deletes and patches load the entity by id; sized in application.conf
+@Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "movie")
+// updates write only the changed columns, a patch of one field does not rewrite the whole row
+@DynamicUpdate
+@Table(name = "movie", indexes = {
+        // back the criteria and facet counts of GET /api/v1/movie/filter: every combination of criteria is a
+        // prefix of one of these, followed by the facets counted under it, so the counts read the index only
+        @Index(name = "idx_movie_genre_year_studio", columnList = "genre, releaseYear, studio"),
+        @Index(name = "idx_movie_genre_studio_year", columnList = "genre, studio, releaseYear"),
+        @Index(name = "idx_movie_studio_year_genre", columnList = "studio, releaseYear, genre"),
+        @Index(name = "idx_movie_year_genre_studio", columnList = "releaseYear, genre, studio"),
+        // one index per sortable field, with movieId as tie-breaker, so sorted pages are read in index order
+        @Index(name = "idx_movie_title_id", columnList = "title, movieId"),
+        @Index(name = "idx_movie_director_id", columnList = "director, movieId"),
+        @Index(name = "idx_movie_release_year", columnList = "releaseYear, movieId"),
+        // incremental exports only read the movies changed since the last run
+        @Index(name = "idx_movie_updated_at", columnList = "updatedAt")
+})
+@NamedQuery(name = "Movie.findAllSummaries", query = "select " + Movie.SUMMARY + " from Movie m order by m.movieId")
+@NamedQuery(name = "Movie.streamAllSummaries", query = "select " + Movie.SUMMARY + " from Movie m order by m.movieId")
+@NamedQuery(name = "Movie.findCastByMovieIdIn", query = "select " + Movie.CAST_MEMBER + " from Movie m join m.movieCast c where m.movieId in :movieIds")
+@NamedQuery(name = "Movie.findAllCast", query = "select " + Movie.CAST_MEMBER + " from Movie m join m.movieCast c")
+@NamedQuery(name = "Movie.findVersionById", query = "select new com.movieflix.movieapi.dto.MovieVersion(m.version, m.updatedAt) from Movie m where m.movieId = :movieId")
+@NamedQuery(name = "Movie.findCatalogVersion", query = "select new com.movieflix.movieapi.dto.CatalogVersion(count(m), max(m.updatedAt)) from Movie m")
+@NamedQuery(name = "Movie.streamExportRows", query = "select new com.movieflix.movieapi.dto.MovieExportRow("
+        + "m.movieId, m.releaseYear, m.title, m.genre, m.director, m.studio, m.poster, m.updatedAt, c) "
+        + "from Movie m left join m.movieCast c "
+        + "where :updatedSince is null or m.updatedAt >= :updatedSince order by m.movieId")
 public class Movie {
 
+    public static final String SUMMARY = "new com.movieflix.movieapi.dto.MovieSummary(m.movieId, m.releaseYear, m.title, m.genre, m.director, m.studio, m.poster)";
+
+    public static final String CAST_MEMBER = "new com.movieflix.movieapi.dto.MovieCastMember(m.movieId, c)";
+
+    // fields pages can be sorted by, each backed by an index declared above (movieId by the primary key)
+    public static final List<String> SORTABLE_FIELDS = List.of("movieId", "title", "director", "releaseYear");
+
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Integer movieId;
@@ -40,8 +79,30 @@ public class Movie {
     @NotBlank(message = "Please provide movie's poster!")
     private String poster;
 
+    // loaded lazily for the detail; list endpoints load the cast of a whole page with findCastByMovieIdIn
     @ElementCollection
     @CollectionTable(name = "movie_cast")
+    @Cache(usage = CacheConcurrencyStrategy.READ_WRITE, region = "movieCast")
     private Set<String> movieCast;
 
+    // set by Hibernate on insert and update; null for rows written before the column existed
+    @UpdateTimestamp
+    private Instant updatedAt;
+
+    // incremented on every update, together with the id it makes up the ETag of the movie
+    @Version
+    @Column(nullable = false)
+    private Long version;
+
+    public Movie(Integer movieId, Integer releaseYear, String title, String genre, String director,
+                 String studio, String poster, Set<String> movieCast) {
+        this.movieId = movieId;
+        this.releaseYear = releaseYear;
+        this.title = title;
+        this.genre = genre;
+        this.director = director;
+        this.studio = studio;
+        this.poster = poster;
+        this.movieCast = movieCast;
+    }
 }
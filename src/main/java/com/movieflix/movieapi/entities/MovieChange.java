@@ -0,0 +1,40 @@
+package com.movieflix.movieapi.entities;
+
+import com.movieflix.movieapi.events.MovieChangeType;
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * One committed write to the catalog, the feed of GET /api/v1/movie/changes. Deleted movies stay in the
+ * feed as a DELETED change.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "movie_change")
+public class MovieChange {
+
+    // taken from MovieChangeSequence in commit order, polls read a range of the primary key
+    @Id
+    private Long changeId;
+
+    @Column(nullable = false)
+    private Integer movieId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 10)
+    private MovieChangeType type;
+
+    @Column(nullable = false)
+    private Instant changedAt;
+}
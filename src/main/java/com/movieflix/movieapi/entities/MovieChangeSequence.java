@@ -0,0 +1,30 @@
+package com.movieflix.movieapi.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Single row holding the last change id handed out. Writers lock it until they commit, so change ids are
+ * committed in increasing order: an auto-increment id can commit after a higher one that a client has
+ * already read past.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "movie_change_sequence")
+public class MovieChangeSequence {
+
+    public static final Integer ID = 1;
+
+    @Id
+    private Integer id;
+
+    @Column(nullable = false)
+    private Long lastChangeId;
+}
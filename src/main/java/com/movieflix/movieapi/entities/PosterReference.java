@@ -0,0 +1,30 @@
+package com.movieflix.movieapi.entities;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * How many movies use a poster stored under its content hash. Movies with identical posters share one file,
+ * which is deleted when the last of them lets go of it. The row is inserted by the first store or delete that
+ * needs to lock it and stays at zero afterwards.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+@Entity
+@Table(name = "poster_reference")
+public class PosterReference {
+
+    // the stored file name, <sha256><extension>
+    @Id
+    @Column(length = 80)
+    private String name;
+
+    @Column(nullable = false)
+    private Integer referenceCount;
+}
@@ -0,0 +1,56 @@
+package com.movieflix.movieapi.events;
+
+import com.movieflix.movieapi.entities.MovieChange;
+import com.movieflix.movieapi.entities.MovieChangeSequence;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.LockModeType;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+
+/**
+ * Records every MovieChangedEvent in the movie_change table, in the transaction of the write itself:
+ * a change is in the feed if and only if the write was committed.
+ */
+@Component
+public class MovieChangeLog implements SmartInitializingSingleton {
+
+    private final EntityManager entityManager;
+    private final TransactionTemplate transaction;
+
+    public MovieChangeLog(EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.entityManager = entityManager;
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        try {
+            transaction.executeWithoutResult(status -> {
+                if (entityManager.find(MovieChangeSequence.class, MovieChangeSequence.ID) == null) {
+                    entityManager.persist(new MovieChangeSequence(MovieChangeSequence.ID, 0L));
+                }
+            });
+        } catch (DataIntegrityViolationException e) {
+            //another instance created it at the same time
+        }
+    }
+
+    // events published outside of a transaction are not recorded, every catalog write runs in one
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onMovieChanged(MovieChangedEvent event) {
+        //held until commit; later changes of the same transaction find the row locked already
+        MovieChangeSequence sequence = entityManager.find(MovieChangeSequence.class, MovieChangeSequence.ID,
+                LockModeType.PESSIMISTIC_WRITE);
+        long changeId = sequence.getLastChangeId() + 1;
+        sequence.setLastChangeId(changeId);
+
+        entityManager.persist(new MovieChange(changeId, event.movieId(), event.type(), Instant.now()));
+    }
+}
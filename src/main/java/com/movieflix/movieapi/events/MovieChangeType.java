@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.events;
+
+public enum MovieChangeType {
+    CREATED,
+    UPDATED,
+    DELETED
+}
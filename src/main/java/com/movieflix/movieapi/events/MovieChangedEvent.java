@@ -0,0 +1,10 @@
+package com.movieflix.movieapi.events;
+
+import com.movieflix.movieapi.dto.MovieDto;
+
+/**
+ * Published by MovieServiceImpl after every admin write to the catalog.
+ * movie holds the state after the write and is null for deletions.
+ */
+public record MovieChangedEvent(MovieChangeType type, Integer movieId, MovieDto movie) {
+}
@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.exceptions;
+
+public class InvalidLimitException extends RuntimeException {
+    public InvalidLimitException(String message) {
+        super(message);
+    }
+}
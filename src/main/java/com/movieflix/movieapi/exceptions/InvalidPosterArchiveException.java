@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.exceptions;
+
+public class InvalidPosterArchiveException extends RuntimeException {
+    public InvalidPosterArchiveException(String message) {
+        super(message);
+    }
+}
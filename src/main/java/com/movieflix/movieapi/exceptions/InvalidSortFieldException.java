@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.exceptions;
+
+public class InvalidSortFieldException extends RuntimeException {
+    public InvalidSortFieldException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.exceptions;
+
+public class PosterNotFoundException extends RuntimeException {
+    public PosterNotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.exceptions;
+
+public class SimilarMoviesDisabledException extends RuntimeException {
+    public SimilarMoviesDisabledException(String message) {
+        super(message);
+    }
+}
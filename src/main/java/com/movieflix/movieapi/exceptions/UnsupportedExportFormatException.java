@@ -0,0 +1,7 @@
+package com.movieflix.movieapi.exceptions;
+
+public class UnsupportedExportFormatException extends RuntimeException {
+    public UnsupportedExportFormatException(String message) {
+        super(message);
+    }
+}
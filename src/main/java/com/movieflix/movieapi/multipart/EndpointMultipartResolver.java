@@ -0,0 +1,66 @@
+package com.movieflix.movieapi.multipart;
+
+import jakarta.servlet.DispatcherType;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.multipart.MultipartHttpServletRequest;
+import org.springframework.web.multipart.support.StandardServletMultipartResolver;
+import org.springframework.web.util.WebUtils;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Holds multipart requests to the given limits unless they are sent to one of the exempt paths, which only
+ * the limits of the servlet container apply to. A request is rejected by its Content-Length before any part
+ * is read; one that does not declare its length is checked by the size of its parts.
+ */
+public class EndpointMultipartResolver extends StandardServletMultipartResolver {
+
+    private final Set<String> exemptPaths;
+    private final long maxFileSize;
+    private final long maxRequestSize;
+
+    public EndpointMultipartResolver(Set<String> exemptPaths, long maxFileSize, long maxRequestSize) {
+        this.exemptPaths = exemptPaths;
+        this.maxFileSize = maxFileSize;
+        this.maxRequestSize = maxRequestSize;
+    }
+
+    @Override
+    public MultipartHttpServletRequest resolveMultipart(HttpServletRequest request) throws MultipartException {
+        boolean limited = !exemptPaths.contains(requestPath(request));
+        if (limited && request.getContentLengthLong() > maxRequestSize) {
+            throw new MaxUploadSizeExceededException(maxRequestSize);
+        }
+
+        MultipartHttpServletRequest multipartRequest = super.resolveMultipart(request);
+        if (limited) {
+            checkSizes(multipartRequest);
+        }
+        return multipartRequest;
+    }
+
+    // an error dispatch resolves the parts of the failed request again, under the path of the error page
+    private static String requestPath(HttpServletRequest request) {
+        Object errorRequestUri = request.getAttribute(WebUtils.ERROR_REQUEST_URI_ATTRIBUTE);
+        String requestUri = request.getDispatcherType() == DispatcherType.ERROR && errorRequestUri != null
+                ? errorRequestUri.toString() : request.getRequestURI();
+        return requestUri.substring(request.getContextPath().length());
+    }
+
+    private void checkSizes(MultipartHttpServletRequest multipartRequest) {
+        long requestSize = 0;
+        for (List<MultipartFile> files : multipartRequest.getMultiFileMap().values()) {
+            for (MultipartFile file : files) {
+                requestSize += file.getSize();
+                if (file.getSize() > maxFileSize || requestSize > maxRequestSize) {
+                    cleanupMultipart(multipartRequest);
+                    throw new MaxUploadSizeExceededException(file.getSize() > maxFileSize ? maxFileSize : maxRequestSize);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.movieflix.movieapi.multipart;
+
+import jakarta.servlet.MultipartConfigElement;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.web.servlet.MultipartProperties;
+import org.springframework.boot.web.servlet.MultipartConfigFactory;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartResolver;
+import org.springframework.web.servlet.DispatcherServlet;
+
+import java.util.Set;
+
+/**
+ * Multipart uploads are held to spring.servlet.multipart, except for the bulk import, which takes a whole
+ * catalog with its posters and is held to project.import.max-file-size and max-request-size instead.
+ * <p>
+ * The servlet container parses every multipart request with the same limits, so it is given the larger ones
+ * and {@link EndpointMultipartResolver} applies the smaller ones to the other endpoints.
+ */
+@Configuration
+public class MultipartConfig {
+
+    private static final Set<String> IMPORT_PATHS = Set.of("/api/v1/movie/admin/import");
+
+    @Bean
+    public MultipartConfigElement multipartConfigElement(MultipartProperties properties,
+                                                         @Value("${project.import.max-file-size}") DataSize importMaxFileSize,
+                                                         @Value("${project.import.max-request-size}") DataSize importMaxRequestSize) {
+        MultipartConfigFactory factory = new MultipartConfigFactory();
+        factory.setLocation(properties.getLocation());
+        factory.setFileSizeThreshold(properties.getFileSizeThreshold());
+        factory.setMaxFileSize(max(properties.getMaxFileSize(), importMaxFileSize));
+        factory.setMaxRequestSize(max(properties.getMaxRequestSize(), importMaxRequestSize));
+        return factory.createMultipartConfig();
+    }
+
+    @Bean(name = DispatcherServlet.MULTIPART_RESOLVER_BEAN_NAME)
+    public MultipartResolver multipartResolver(MultipartProperties properties) {
+        return new EndpointMultipartResolver(IMPORT_PATHS,
+                properties.getMaxFileSize().toBytes(), properties.getMaxRequestSize().toBytes());
+    }
+
+    private static DataSize max(DataSize size, DataSize other) {
+        return size.compareTo(other) >= 0 ? size : other;
+    }
+}
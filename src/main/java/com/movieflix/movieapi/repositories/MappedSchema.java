@@ -0,0 +1,62 @@
+package com.movieflix.movieapi.repositories;
+
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.persister.collection.AbstractCollectionPersister;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.type.descriptor.java.VersionJavaType;
+
+/**
+ * Table and column names of mapped entities as the naming strategy made them, for statements that go through
+ * plain JDBC, so they follow a rename of the entity like the queries of the entity manager do.
+ */
+final class MappedSchema {
+
+    private final SessionFactoryImplementor sessionFactory;
+
+    MappedSchema(EntityManager entityManager) {
+        this.sessionFactory = entityManager.getEntityManagerFactory().unwrap(SessionFactoryImplementor.class);
+    }
+
+    String table(Class<?> entity) {
+        return persister(entity).getTableName();
+    }
+
+    // the id attribute too
+    String column(Class<?> entity, String attribute) {
+        return persister(entity).getPropertyColumnNames(attribute)[0];
+    }
+
+    String collectionTable(Class<?> entity, String attribute) {
+        return collectionPersister(entity, attribute).getTableName();
+    }
+
+    // the column referencing the owning entity
+    String collectionKeyColumn(Class<?> entity, String attribute) {
+        return collectionPersister(entity, attribute).getKeyColumnNames()[0];
+    }
+
+    String collectionElementColumn(Class<?> entity, String attribute) {
+        return collectionPersister(entity, attribute).getElementColumnNames()[0];
+    }
+
+    // the version Hibernate gives a new entity
+    Object initialVersion(Class<?> entity) {
+        VersionJavaType<?> versionType = (VersionJavaType<?>) persister(entity).getVersionMapping().getJavaType();
+        return versionType.seed(null, null, null, null);
+    }
+
+    Dialect dialect() {
+        return sessionFactory.getJdbcServices().getDialect();
+    }
+
+    private AbstractEntityPersister persister(Class<?> entity) {
+        return (AbstractEntityPersister) sessionFactory.getMappingMetamodel().getEntityDescriptor(entity);
+    }
+
+    private AbstractCollectionPersister collectionPersister(Class<?> entity, String attribute) {
+        return (AbstractCollectionPersister) sessionFactory.getMappingMetamodel()
+                .getCollectionDescriptor(entity.getName() + "." + attribute);
+    }
+}
@@ -0,0 +1,13 @@
+package com.movieflix.movieapi.repositories;
+
+import com.movieflix.movieapi.entities.MovieChange;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+
+public interface MovieChangeRepository extends JpaRepository<MovieChange, Long> {
+
+    // a range scan of the primary key, a poll without changes reads no row
+    List<MovieChange> findByChangeIdGreaterThanOrderByChangeId(Long changeId, Limit limit);
+}
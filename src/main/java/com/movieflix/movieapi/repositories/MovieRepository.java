@@ -1,7 +1,61 @@
 package com.movieflix.movieapi.repositories;
 
+import com.movieflix.movieapi.dto.CatalogVersion;
+import com.movieflix.movieapi.dto.MovieCastMember;
+import com.movieflix.movieapi.dto.MovieExportRow;
+import com.movieflix.movieapi.dto.MovieSummary;
+import com.movieflix.movieapi.dto.MovieVersion;
 import com.movieflix.movieapi.entities.Movie;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 
-public interface MovieRepository  extends JpaRepository<Movie, Integer> {
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+public interface MovieRepository  extends JpaRepository<Movie, Integer>, MovieRepositoryCustom {
+
+    // the projection queries without dynamic sorting are @NamedQuery declarations on Movie:
+    // Spring Data re-parses @Query strings on every call, named queries go straight to Hibernate
+
+    List<MovieSummary> findAllSummaries();
+
+    @Query(value = "select " + Movie.SUMMARY + " from Movie m", countQuery = "select count(m) from Movie m")
+    Page<MovieSummary> findAllSummaries(Pageable pageable);
+
+    // a Slice reads one row past the page to know whether there is a next one, and runs no count query
+    @Query("select " + Movie.SUMMARY + " from Movie m")
+    Slice<MovieSummary> findSummarySlice(Pageable pageable);
+
+    // keyset scrolling needs entity results; read-only entities skip the dirty-checking snapshot
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true"))
+    Window<Movie> findAllBy(ScrollPosition position, Sort sort, Limit limit);
+
+    // forward-only cursor, rows are fetched from the server in chunks (requires useCursorFetch on MySQL)
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<MovieSummary> streamAllSummaries();
+
+    // one row per cast member (or one with a null member for movies without cast), ordered by movie
+    @QueryHints(@QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "500"))
+    Stream<MovieExportRow> streamExportRows(Instant updatedSince);
+
+    Optional<MovieVersion> findVersionById(Integer movieId);
+
+    CatalogVersion findCatalogVersion();
+
+    List<MovieCastMember> findCastByMovieIdIn(Collection<Integer> movieIds);
+
+    List<MovieCastMember> findAllCast();
 }
@@ -0,0 +1,31 @@
+package com.movieflix.movieapi.repositories;
+
+import com.movieflix.movieapi.dto.MovieFilter;
+import com.movieflix.movieapi.dto.MovieSummary;
+import com.movieflix.movieapi.entities.Movie;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+import java.util.List;
+import java.util.Map;
+
+public interface MovieRepositoryCustom {
+
+    Page<MovieSummary> findSummaries(MovieFilter filter, Pageable pageable);
+
+    /**
+     * A page of the movies matching the filter when their total is already known, so no count query is run.
+     */
+    Page<MovieSummary> findSummaries(MovieFilter filter, Pageable pageable, long total);
+
+    /**
+     * Counts the movies matching the filter per value of the given attribute, most frequent first.
+     * The filter's own criterion on that attribute is ignored.
+     */
+    <T> Map<T, Long> countByFacet(String attribute, Class<T> type, MovieFilter filter);
+
+    /**
+     * Inserts the movies and their cast as one JDBC batch each and sets the generated ids on the given movies.
+     */
+    void insertAll(List<Movie> movies);
+}
@@ -0,0 +1,203 @@
+package com.movieflix.movieapi.repositories;
+
+import com.movieflix.movieapi.dto.MovieFilter;
+import com.movieflix.movieapi.dto.MovieSummary;
+import com.movieflix.movieapi.entities.Movie;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Expression;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Filter queries built with the Criteria API. Every criterion is an equality or range on genre, studio or
+ * releaseYear, which the indexes declared on Movie cover.
+ * <p>
+ * Bulk inserts go through plain JDBC: Hibernate does not batch inserts of IDENTITY ids, while the driver
+ * can send a whole batch as one multi-row insert and still hand back every generated id.
+ */
+public class MovieRepositoryImpl implements MovieRepositoryCustom {
+
+    private static final String GENRE = "genre";
+    private static final String STUDIO = "studio";
+    private static final String RELEASE_YEAR = "releaseYear";
+
+    // in the order of the parameters set in insertAll
+    private static final List<String> INSERTED_ATTRIBUTES =
+            List.of(RELEASE_YEAR, "title", GENRE, "director", STUDIO, "poster", "updatedAt", "version");
+
+    private final EntityManager entityManager;
+    private final JdbcTemplate jdbcTemplate;
+
+    // built from the mapping, so a renamed attribute or table cannot break the import alone
+    private final String insertMovie;
+    private final String movieIdColumn;
+    private final Object initialVersion;
+    private final String insertCast;
+
+    public MovieRepositoryImpl(EntityManager entityManager, JdbcTemplate jdbcTemplate) {
+        this.entityManager = entityManager;
+        this.jdbcTemplate = jdbcTemplate;
+
+        MappedSchema schema = new MappedSchema(entityManager);
+        List<String> columns = new ArrayList<>();
+        for (String attribute : INSERTED_ATTRIBUTES) {
+            columns.add(schema.column(Movie.class, attribute));
+        }
+        this.insertMovie = "insert into " + schema.table(Movie.class) + " (" + String.join(", ", columns) + ") values ("
+                + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+        this.movieIdColumn = schema.column(Movie.class, "movieId");
+        this.initialVersion = schema.initialVersion(Movie.class);
+        this.insertCast = "insert into " + schema.collectionTable(Movie.class, "movieCast") + " ("
+                + schema.collectionKeyColumn(Movie.class, "movieCast") + ", "
+                + schema.collectionElementColumn(Movie.class, "movieCast") + ") values (?, ?)";
+    }
+
+    @Override
+    public Page<MovieSummary> findSummaries(MovieFilter filter, Pageable pageable) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Long> countQuery = cb.createQuery(Long.class);
+        Root<Movie> countRoot = countQuery.from(Movie.class);
+        countQuery.select(cb.count(countRoot)).where(predicates(cb, countRoot, filter, null));
+        long total = entityManager.createQuery(countQuery).getSingleResult();
+
+        return findSummaries(filter, pageable, total);
+    }
+
+    @Override
+    public Page<MovieSummary> findSummaries(MovieFilter filter, Pageable pageable, long total) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<MovieSummary> query = cb.createQuery(MovieSummary.class);
+        Root<Movie> movie = query.from(Movie.class);
+        query.select(cb.construct(MovieSummary.class,
+                        movie.get("movieId"),
+                        movie.get(RELEASE_YEAR),
+                        movie.get("title"),
+                        movie.get(GENRE),
+                        movie.get("director"),
+                        movie.get(STUDIO),
+                        movie.get("poster")))
+                .where(predicates(cb, movie, filter, null))
+                .orderBy(cb.asc(movie.get("movieId")));
+
+        List<MovieSummary> content = entityManager.createQuery(query)
+                .setFirstResult((int) pageable.getOffset())
+                .setMaxResults(pageable.getPageSize())
+                .getResultList();
+
+        return new PageImpl<>(content, pageable, total);
+    }
+
+    @Override
+    public <T> Map<T, Long> countByFacet(String attribute, Class<T> type, MovieFilter filter) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        CriteriaQuery<Tuple> query = cb.createTupleQuery();
+        Root<Movie> movie = query.from(Movie.class);
+        Path<T> facet = movie.get(attribute);
+        Expression<Long> count = cb.count(movie);
+        query.multiselect(facet, count)
+                .where(predicates(cb, movie, filter, attribute))
+                .groupBy(facet)
+                .orderBy(cb.desc(count), cb.asc(facet));
+
+        Map<T, Long> counts = new LinkedHashMap<>();
+        for (Tuple tuple : entityManager.createQuery(query).getResultList()) {
+            counts.put(tuple.get(0, type), tuple.get(1, Long.class));
+        }
+        return counts;
+    }
+
+    @Override
+    public void insertAll(List<Movie> movies) {
+        if (movies.isEmpty()) {
+            return;
+        }
+
+        //stored as UTC like Hibernate does for the @UpdateTimestamp of the entity
+        Instant now = Instant.now();
+        Calendar utc = Calendar.getInstance(TimeZone.getTimeZone(ZoneOffset.UTC));
+
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(connection -> connection.prepareStatement(insertMovie, new String[]{movieIdColumn}),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        Movie movie = movies.get(i);
+                        ps.setInt(1, movie.getReleaseYear());
+                        ps.setString(2, movie.getTitle());
+                        ps.setString(3, movie.getGenre());
+                        ps.setString(4, movie.getDirector());
+                        ps.setString(5, movie.getStudio());
+                        ps.setString(6, movie.getPoster());
+                        ps.setTimestamp(7, Timestamp.from(now), utc);
+                        ps.setObject(8, initialVersion);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return movies.size();
+                    }
+                }, keyHolder);
+
+        // the key column is named differently per driver, but each row holds only the id
+        List<Map<String, Object>> keys = keyHolder.getKeyList();
+        List<Object[]> castRows = new ArrayList<>();
+        for (int i = 0; i < movies.size(); i++) {
+            Movie movie = movies.get(i);
+            movie.setMovieId(((Number) keys.get(i).values().iterator().next()).intValue());
+            movie.setUpdatedAt(now);
+            movie.setVersion((Long) initialVersion);
+            if (movie.getMovieCast() != null) {
+                for (String castMember : movie.getMovieCast()) {
+                    castRows.add(new Object[]{movie.getMovieId(), castMember});
+                }
+            }
+        }
+        jdbcTemplate.batchUpdate(insertCast, castRows);
+    }
+
+    private static Predicate[] predicates(CriteriaBuilder cb, Root<Movie> movie, MovieFilter filter, String ignoredAttribute) {
+        List<Predicate> predicates = new ArrayList<>();
+        if (filter.genre() != null && !GENRE.equals(ignoredAttribute)) {
+            predicates.add(cb.equal(movie.get(GENRE), filter.genre()));
+        }
+        if (filter.studio() != null && !STUDIO.equals(ignoredAttribute)) {
+            predicates.add(cb.equal(movie.get(STUDIO), filter.studio()));
+        }
+        if (!RELEASE_YEAR.equals(ignoredAttribute)) {
+            if (filter.yearFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(movie.get(RELEASE_YEAR), filter.yearFrom()));
+            }
+            if (filter.yearTo() != null) {
+                predicates.add(cb.lessThanOrEqualTo(movie.get(RELEASE_YEAR), filter.yearTo()));
+            }
+        }
+        return predicates.toArray(new Predicate[0]);
+    }
+}
@@ -0,0 +1,17 @@
+package com.movieflix.movieapi.repositories;
+
+import com.movieflix.movieapi.entities.PosterReference;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+
+import java.util.Optional;
+
+public interface PosterReferenceRepository extends JpaRepository<PosterReference, String>, PosterReferenceRepositoryCustom {
+
+    // held until commit, storing and deleting the file of the poster happen under this lock
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select r from PosterReference r where r.name = :name")
+    Optional<PosterReference> findForUpdate(String name);
+}
@@ -0,0 +1,10 @@
+package com.movieflix.movieapi.repositories;
+
+public interface PosterReferenceRepositoryCustom {
+
+    /**
+     * Inserts the row with the given count unless there is one already, in the current transaction. Uploads
+     * of the same content at once do not fail on each other.
+     */
+    void insertIfAbsent(String name, int referenceCount);
+}
@@ -0,0 +1,40 @@
+package com.movieflix.movieapi.repositories;
+
+import com.movieflix.movieapi.entities.PosterReference;
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.MySQLDialect;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * The insert goes through plain JDBC on the connection of the current transaction: an entity insert that hits
+ * the primary key would spoil the persistence context, and MySQL has no standard MERGE.
+ */
+public class PosterReferenceRepositoryImpl implements PosterReferenceRepositoryCustom {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String insertIfAbsent;
+
+    public PosterReferenceRepositoryImpl(EntityManager entityManager, JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+
+        MappedSchema schema = new MappedSchema(entityManager);
+        String table = schema.table(PosterReference.class);
+        String name = schema.column(PosterReference.class, "name");
+        String referenceCount = schema.column(PosterReference.class, "referenceCount");
+        if (schema.dialect() instanceof MySQLDialect) {
+            //also MariaDB; the no-op update takes the same lock an insert would
+            this.insertIfAbsent = "insert into " + table + " (" + name + ", " + referenceCount + ") values (?, ?)"
+                    + " on duplicate key update " + referenceCount + " = " + referenceCount;
+        } else {
+            this.insertIfAbsent = "merge into " + table + " t using (select cast(? as varchar(80)) as name,"
+                    + " cast(? as integer) as reference_count) s on t." + name + " = s.name"
+                    + " when not matched then insert (" + name + ", " + referenceCount + ")"
+                    + " values (s.name, s.reference_count)";
+        }
+    }
+
+    @Override
+    public void insertIfAbsent(String name, int referenceCount) {
+        jdbcTemplate.update(insertIfAbsent, name, referenceCount);
+    }
+}
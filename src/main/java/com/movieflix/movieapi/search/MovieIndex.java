@@ -0,0 +1,17 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+
+/**
+ * An in-memory structure derived from the catalog. Implementations are filled once at startup
+ * and then kept current by {@link MovieIndexer} after every committed write.
+ */
+public interface MovieIndex {
+
+    /**
+     * Adds the movie, or replaces everything previously indexed for the same movieId.
+     */
+    void index(MovieDto movie);
+
+    void remove(Integer movieId);
+}
@@ -0,0 +1,47 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.events.MovieChangeType;
+import com.movieflix.movieapi.events.MovieChangedEvent;
+import com.movieflix.movieapi.services.MovieService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+@Slf4j
+@Component
+public class MovieIndexer implements SmartInitializingSingleton {
+
+    private final MovieService movieService;
+    private final List<MovieIndex> movieIndexes;
+
+    public MovieIndexer(MovieService movieService, List<MovieIndex> movieIndexes) {
+        this.movieService = movieService;
+        this.movieIndexes = movieIndexes;
+    }
+
+    // runs before the web server starts, so no request sees a half built index
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.currentTimeMillis();
+        int[] count = {0};
+
+        movieService.streamAllMovies(movie -> {
+            movieIndexes.forEach(movieIndex -> movieIndex.index(movie));
+            count[0]++;
+        });
+        log.info("Indexed {} movies into {} indexes in {} ms", count[0], movieIndexes.size(),
+                System.currentTimeMillis() - start);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMovieChanged(MovieChangedEvent event) {
+        if (event.type() == MovieChangeType.DELETED) {
+            movieIndexes.forEach(movieIndex -> movieIndex.remove(event.movieId()));
+        } else {
+            movieIndexes.forEach(movieIndex -> movieIndex.index(event.movie()));
+        }
+    }
+}
@@ -0,0 +1,212 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over title, director, studio, genre and cast. A movie matches when it contains every
+ * word of the query; matches are ranked by the summed weight of the fields the words were found in.
+ */
+@Component
+public class MovieSearchIndex implements MovieIndex {
+
+    private static final int TITLE_WEIGHT = 5;
+    private static final int CAST_WEIGHT = 3;
+    private static final int DIRECTOR_WEIGHT = 3;
+    private static final int STUDIO_WEIGHT = 2;
+    private static final int GENRE_WEIGHT = 1;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Postings> postingsByToken = new HashMap<>();
+
+    // tokens indexed per movie, needed to take a movie out of the postings again
+    private final Map<Integer, String[]> tokensByMovie = new HashMap<>();
+
+    @Override
+    public void index(MovieDto movie) {
+        Map<String, Integer> weights = new HashMap<>();
+        addTokens(weights, movie.getTitle(), TITLE_WEIGHT);
+        addTokens(weights, movie.getDirector(), DIRECTOR_WEIGHT);
+        addTokens(weights, movie.getStudio(), STUDIO_WEIGHT);
+        addTokens(weights, movie.getGenre(), GENRE_WEIGHT);
+        if (movie.getMovieCast() != null) {
+            movie.getMovieCast().forEach(castMember -> addTokens(weights, castMember, CAST_WEIGHT));
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeFromPostings(movie.getMovieId());
+
+            String[] tokens = new String[weights.size()];
+            int i = 0;
+            for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+                Postings postings = postingsByToken.computeIfAbsent(entry.getKey(), Postings::new);
+                postings.put(movie.getMovieId(), entry.getValue());
+                //reuse the token instance of the postings instead of keeping a copy per movie
+                tokens[i++] = postings.token;
+            }
+            tokensByMovie.put(movie.getMovieId(), tokens);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Integer movieId) {
+        lock.writeLock().lock();
+        try {
+            removeFromPostings(movieId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the best matching movies, best first.
+     */
+    public List<Integer> search(String query, int limit) {
+        List<String> queryTokens = TextNormalizer.tokenize(query);
+        if (queryTokens.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Postings[] termPostings = new Postings[queryTokens.size()];
+            for (int i = 0; i < termPostings.length; i++) {
+                termPostings[i] = postingsByToken.get(queryTokens.get(i));
+                if (termPostings[i] == null) {
+                    return List.of();
+                }
+            }
+            // walk the rarest word and look the candidates up in the others
+            Arrays.sort(termPostings, Comparator.comparingInt(postings -> postings.size));
+
+            Comparator<long[]> byScore = Comparator.<long[]>comparingLong(hit -> hit[1])
+                    .thenComparingLong(hit -> -hit[0]);
+            PriorityQueue<long[]> best = new PriorityQueue<>(limit + 1, byScore);
+
+            long maxScore = 0;
+            for (Postings postings : termPostings) {
+                maxScore += postings.maxWeight;
+            }
+
+            Postings rarest = termPostings[0];
+            candidates:
+            for (int i = 0; i < rarest.size; i++) {
+                int movieId = rarest.movieIds[i];
+                long score = rarest.weights[i];
+                for (int t = 1; t < termPostings.length; t++) {
+                    int weight = termPostings[t].weightOf(movieId);
+                    if (weight == 0) {
+                        continue candidates;
+                    }
+                    score += weight;
+                }
+                //candidates come in id order, so one that does not beat the current worst hit on score never will
+                if (best.size() == limit && score <= best.peek()[1]) {
+                    if (best.peek()[1] >= maxScore) {
+                        break;
+                    }
+                    continue;
+                }
+                best.add(new long[]{movieId, score});
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+
+            List<Integer> movieIds = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                movieIds.add((int) best.poll()[0]);
+            }
+            return movieIds.reversed();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeFromPostings(Integer movieId) {
+        String[] tokens = tokensByMovie.remove(movieId);
+        if (tokens == null) {
+            return;
+        }
+        for (String token : tokens) {
+            Postings postings = postingsByToken.get(token);
+            postings.remove(movieId);
+            if (postings.size == 0) {
+                postingsByToken.remove(token);
+            }
+        }
+    }
+
+    private static void addTokens(Map<String, Integer> weights, String text, int weight) {
+        for (String token : TextNormalizer.tokenize(text)) {
+            weights.merge(token, weight, Integer::sum);
+        }
+    }
+
+    /**
+     * Movie ids containing one token, kept sorted by id with the weight of the token in each movie.
+     * The catalog is streamed in id order at startup, so building the index only ever appends.
+     */
+    private static final class Postings {
+
+        private final String token;
+        private int[] movieIds = new int[2];
+        private int[] weights = new int[2];
+        private int size;
+
+        // upper bound of the weights, not lowered on removal
+        private int maxWeight;
+
+        Postings(String token) {
+            this.token = token;
+        }
+
+        void put(int movieId, int weight) {
+            maxWeight = Math.max(maxWeight, weight);
+            int position = Arrays.binarySearch(movieIds, 0, size, movieId);
+            if (position >= 0) {
+                weights[position] = weight;
+                return;
+            }
+            position = -position - 1;
+            if (size == movieIds.length) {
+                movieIds = Arrays.copyOf(movieIds, size * 2);
+                weights = Arrays.copyOf(weights, size * 2);
+            }
+            System.arraycopy(movieIds, position, movieIds, position + 1, size - position);
+            System.arraycopy(weights, position, weights, position + 1, size - position);
+            movieIds[position] = movieId;
+            weights[position] = weight;
+            size++;
+        }
+
+        void remove(int movieId) {
+            int position = Arrays.binarySearch(movieIds, 0, size, movieId);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(movieIds, position + 1, movieIds, position, size - position - 1);
+            System.arraycopy(weights, position + 1, weights, position, size - position - 1);
+            size--;
+        }
+
+        int weightOf(int movieId) {
+            int position = Arrays.binarySearch(movieIds, 0, size, movieId);
+            return position >= 0 ? weights[position] : 0;
+        }
+    }
+}
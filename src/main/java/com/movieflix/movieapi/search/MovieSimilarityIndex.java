@@ -0,0 +1,323 @@
+package com.movieflix.movieapi.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.movieflix.movieapi.dto.MovieDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntConsumer;
+
+/**
+ * Movies ranked by what they share with another movie: cast members, director, genre and how close their
+ * release years are. Candidates are the movies sharing a cast member or the director; when those are fewer than
+ * the number of neighbors kept, the list is filled up with movies of the same genre, nearest release year first.
+ * <p>
+ * Neighbor lists are computed on first request and cached. A write drops only the lists it can change: those of
+ * movies sharing a cast member or the director with the old or new version of the movie, and those that were
+ * filled up from its old or new genre.
+ * <p>
+ * Only built with project.similar.enabled. It keeps the features of every movie and the movies per cast member,
+ * director, genre and year on the heap, about 530MB at a million movies, plus up to project.similar.cache-size
+ * neighbor lists of roughly 100 bytes each.
+ */
+@Component
+@ConditionalOnProperty(name = "project.similar.enabled", havingValue = "true")
+public class MovieSimilarityIndex implements MovieIndex {
+
+    private static final double CAST_WEIGHT = 3;
+    private static final double DIRECTOR_WEIGHT = 2;
+    private static final double GENRE_WEIGHT = 1;
+
+    // release years this far apart or more add nothing
+    private static final int YEAR_RANGE = 10;
+
+    private final int neighborCount;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<Integer, Features> featuresByMovie = new HashMap<>();
+
+    private final Map<String, MovieIds> moviesByCastMember = new HashMap<>();
+
+    private final Map<String, MovieIds> moviesByDirector = new HashMap<>();
+
+    private final Map<String, NavigableMap<Integer, MovieIds>> moviesByGenreAndYear = new HashMap<>();
+
+    private final Cache<Integer, int[]> neighbors;
+
+    // cached lists that were filled up from a genre, added to by readers
+    private final Map<String, Set<Integer>> filledFromGenre = new ConcurrentHashMap<>();
+
+    // false while the index is built at startup, which saves looking for lists to drop on every movie
+    private volatile boolean neighborsRequested;
+
+    public MovieSimilarityIndex(@Value("${project.similar.neighbors}") int neighborCount,
+                                @Value("${project.similar.cache-size}") long cacheSize,
+                                MeterRegistry meterRegistry) {
+        this.neighborCount = neighborCount;
+        this.neighbors = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, neighbors, "movieNeighbors");
+    }
+
+    @Override
+    public void index(MovieDto movie) {
+        Features features = Features.of(movie);
+
+        lock.writeLock().lock();
+        try {
+            Features previous = featuresByMovie.put(movie.getMovieId(), features);
+            if (previous != null) {
+                removeFromPostings(movie.getMovieId(), previous);
+                invalidateAffected(movie.getMovieId(), previous);
+            }
+            for (String castMember : features.cast) {
+                moviesByCastMember.computeIfAbsent(castMember, key -> new MovieIds()).add(movie.getMovieId());
+            }
+            moviesByDirector.computeIfAbsent(features.director, key -> new MovieIds()).add(movie.getMovieId());
+            moviesByGenreAndYear.computeIfAbsent(features.genre, key -> new TreeMap<>())
+                    .computeIfAbsent(features.releaseYear, key -> new MovieIds()).add(movie.getMovieId());
+            invalidateAffected(movie.getMovieId(), features);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Integer movieId) {
+        lock.writeLock().lock();
+        try {
+            Features previous = featuresByMovie.remove(movieId);
+            if (previous != null) {
+                removeFromPostings(movieId, previous);
+                invalidateAffected(movieId, previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns the ids of the movies most similar to the given one, most similar first.
+     */
+    public List<Integer> similar(Integer movieId, int limit) {
+        if (limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Features features = featuresByMovie.get(movieId);
+            if (features == null) {
+                return List.of();
+            }
+            neighborsRequested = true;
+            //computed under the read lock, so no write can invalidate the list before it is cached
+            int[] movieIds = neighbors.get(movieId, key -> computeNeighbors(key, features));
+
+            List<Integer> similar = new ArrayList<>(Math.min(limit, movieIds.length));
+            for (int i = 0; i < movieIds.length && i < limit; i++) {
+                similar.add(movieIds[i]);
+            }
+            return similar;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int[] computeNeighbors(Integer movieId, Features features) {
+        Map<Integer, Integer> sharedCast = new HashMap<>();
+        for (String castMember : features.cast) {
+            moviesByCastMember.get(castMember).forEach(other -> sharedCast.merge(other, 1, Integer::sum));
+        }
+        Set<Integer> candidates = new LinkedHashSet<>(sharedCast.keySet());
+        moviesByDirector.get(features.director).forEach(candidates::add);
+        candidates.remove(movieId);
+
+        List<Neighbor> scored = new ArrayList<>(candidates.size() + neighborCount);
+        for (Integer candidate : candidates) {
+            Features other = featuresByMovie.get(candidate);
+            double score = CAST_WEIGHT * sharedCast.getOrDefault(candidate, 0)
+                    + (features.director.equals(other.director) ? DIRECTOR_WEIGHT : 0)
+                    + (features.genre.equals(other.genre) ? GENRE_WEIGHT : 0)
+                    + yearProximity(features.releaseYear, other.releaseYear);
+            scored.add(new Neighbor(candidate, score));
+        }
+
+        //sharing a cast member or the director scores at least as much as sharing only genre and year
+        if (candidates.size() < neighborCount) {
+            fillFromGenre(movieId, features, candidates, scored);
+            filledFromGenre.computeIfAbsent(features.genre, key -> ConcurrentHashMap.newKeySet()).add(movieId);
+        }
+
+        scored.sort(Neighbor.BEST_FIRST);
+        int[] movieIds = new int[Math.min(neighborCount, scored.size())];
+        for (int i = 0; i < movieIds.length; i++) {
+            movieIds[i] = scored.get(i).movieId;
+        }
+        return movieIds;
+    }
+
+    private void fillFromGenre(Integer movieId, Features features, Set<Integer> candidates, List<Neighbor> scored) {
+        NavigableMap<Integer, MovieIds> byYear = moviesByGenreAndYear.get(features.genre);
+        Iterator<Map.Entry<Integer, MovieIds>> later = byYear.tailMap(features.releaseYear, true).entrySet().iterator();
+        Iterator<Map.Entry<Integer, MovieIds>> earlier = byYear.headMap(features.releaseYear, false)
+                .descendingMap().entrySet().iterator();
+        Map.Entry<Integer, MovieIds> nextLater = later.hasNext() ? later.next() : null;
+        Map.Entry<Integer, MovieIds> nextEarlier = earlier.hasNext() ? earlier.next() : null;
+
+        int missing = neighborCount - candidates.size();
+        //walk the release years outwards, nearest first
+        while (missing > 0 && (nextLater != null || nextEarlier != null)) {
+            Map.Entry<Integer, MovieIds> year;
+            if (nextEarlier == null || (nextLater != null
+                    && nextLater.getKey() - features.releaseYear <= features.releaseYear - nextEarlier.getKey())) {
+                year = nextLater;
+                nextLater = later.hasNext() ? later.next() : null;
+            } else {
+                year = nextEarlier;
+                nextEarlier = earlier.hasNext() ? earlier.next() : null;
+            }
+
+            double score = GENRE_WEIGHT + yearProximity(features.releaseYear, year.getKey());
+            MovieIds movieIds = year.getValue();
+            for (int i = 0; i < movieIds.size && missing > 0; i++) {
+                int other = movieIds.ids[i];
+                if (other != movieId && !candidates.contains(other)) {
+                    scored.add(new Neighbor(other, score));
+                    missing--;
+                }
+            }
+        }
+    }
+
+    private void invalidateAffected(Integer movieId, Features features) {
+        if (!neighborsRequested) {
+            return;
+        }
+        neighbors.invalidate(movieId);
+        for (String castMember : features.cast) {
+            MovieIds movieIds = moviesByCastMember.get(castMember);
+            if (movieIds != null) {
+                movieIds.forEach(neighbors::invalidate);
+            }
+        }
+        MovieIds sameDirector = moviesByDirector.get(features.director);
+        if (sameDirector != null) {
+            sameDirector.forEach(neighbors::invalidate);
+        }
+        Set<Integer> filled = filledFromGenre.remove(features.genre);
+        if (filled != null) {
+            neighbors.invalidateAll(filled);
+        }
+    }
+
+    private void removeFromPostings(Integer movieId, Features features) {
+        for (String castMember : features.cast) {
+            removeFrom(moviesByCastMember, castMember, movieId);
+        }
+        removeFrom(moviesByDirector, features.director, movieId);
+        NavigableMap<Integer, MovieIds> byYear = moviesByGenreAndYear.get(features.genre);
+        removeFrom(byYear, features.releaseYear, movieId);
+        if (byYear.isEmpty()) {
+            moviesByGenreAndYear.remove(features.genre);
+        }
+    }
+
+    private static <K> void removeFrom(Map<K, MovieIds> postings, K key, int movieId) {
+        MovieIds movieIds = postings.get(key);
+        movieIds.remove(movieId);
+        if (movieIds.size == 0) {
+            postings.remove(key);
+        }
+    }
+
+    private static double yearProximity(int releaseYear, int otherReleaseYear) {
+        return Math.max(0, 1 - (double) Math.abs(releaseYear - otherReleaseYear) / YEAR_RANGE);
+    }
+
+    private record Neighbor(int movieId, double score) {
+
+        // ties go to the older movie id so lists are stable
+        static final Comparator<Neighbor> BEST_FIRST = Comparator
+                .comparingDouble(Neighbor::score).reversed()
+                .thenComparingInt(Neighbor::movieId);
+    }
+
+    /**
+     * The normalized values a movie is compared on.
+     */
+    private record Features(String[] cast, String director, String genre, int releaseYear) {
+
+        static Features of(MovieDto movie) {
+            String[] cast = movie.getMovieCast() == null ? new String[0] : movie.getMovieCast().stream()
+                    .map(Features::key)
+                    .filter(key -> !key.isEmpty())
+                    .distinct()
+                    .toArray(String[]::new);
+            return new Features(cast, key(movie.getDirector()), key(movie.getGenre()), movie.getReleaseYear());
+        }
+
+        private static String key(String text) {
+            return String.join(" ", TextNormalizer.tokenize(text));
+        }
+    }
+
+    /**
+     * Movie ids kept sorted in a growable array, a lot smaller than a set of boxed ids.
+     */
+    private static final class MovieIds {
+
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int movieId) {
+            int position = Arrays.binarySearch(ids, 0, size, movieId);
+            if (position >= 0) {
+                return;
+            }
+            position = -position - 1;
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            System.arraycopy(ids, position, ids, position + 1, size - position);
+            ids[position] = movieId;
+            size++;
+        }
+
+        void remove(int movieId) {
+            int position = Arrays.binarySearch(ids, 0, size, movieId);
+            if (position < 0) {
+                return;
+            }
+            System.arraycopy(ids, position + 1, ids, position, size - position - 1);
+            size--;
+        }
+
+        void forEach(IntConsumer action) {
+            for (int i = 0; i < size; i++) {
+                action.accept(ids[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieStats;
+import org.springframework.stereotype.Component;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Movie counts per genre, release year and studio. A write only moves the movie from the counters of its
+ * previous values to those of its new ones, so keeping the counts current never touches the other movies.
+ */
+@Component
+public class MovieStatsIndex implements MovieIndex {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Long> genreCounts = new HashMap<>();
+
+    private final Map<Integer, Long> releaseYearCounts = new HashMap<>();
+
+    private final Map<String, Long> studioCounts = new HashMap<>();
+
+    // values counted per movie, needed to take an updated or deleted movie off its old counters
+    private final Map<Integer, Counted> countedByMovie = new HashMap<>();
+
+    @Override
+    public void index(MovieDto movie) {
+        Counted counted = new Counted(movie.getGenre(), movie.getReleaseYear(), movie.getStudio());
+
+        lock.writeLock().lock();
+        try {
+            Counted previous = countedByMovie.put(movie.getMovieId(), counted);
+            if (previous != null) {
+                count(previous, -1);
+            }
+            count(counted, 1);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Integer movieId) {
+        lock.writeLock().lock();
+        try {
+            Counted previous = countedByMovie.remove(movieId);
+            if (previous != null) {
+                count(previous, -1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public MovieStats stats() {
+        lock.readLock().lock();
+        try {
+            return new MovieStats(countedByMovie.size(), sorted(genreCounts), sorted(releaseYearCounts), sorted(studioCounts));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void count(Counted counted, long delta) {
+        add(genreCounts, counted.genre, delta);
+        add(releaseYearCounts, counted.releaseYear, delta);
+        add(studioCounts, counted.studio, delta);
+    }
+
+    private static <K> void add(Map<K, Long> counts, K key, long delta) {
+        if (key != null) {
+            //a value nobody has any more disappears from the stats
+            counts.compute(key, (k, count) -> {
+                long updated = (count == null ? 0 : count) + delta;
+                return updated == 0 ? null : updated;
+            });
+        }
+    }
+
+    // same order as the facet counts of /filter: largest count first, then by value
+    private static <K extends Comparable<K>> Map<K, Long> sorted(Map<K, Long> counts) {
+        Map<K, Long> sorted = new LinkedHashMap<>();
+        counts.entrySet().stream()
+                .sorted(Map.Entry.<K, Long>comparingByValue(Comparator.reverseOrder()).thenComparing(Map.Entry.comparingByKey()))
+                .forEachOrdered(entry -> sorted.put(entry.getKey(), entry.getValue()));
+        return sorted;
+    }
+
+    private record Counted(String genre, Integer releaseYear, String studio) {
+    }
+}
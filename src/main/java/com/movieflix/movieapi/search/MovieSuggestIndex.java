@@ -0,0 +1,185 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieSuggestion;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Sorted map of normalized titles and cast names for autocomplete. Every title is also indexed from
+ * each of its words on, so "matr" suggests "The Matrix". A prefix lookup is a walk over the sub map
+ * starting at the prefix, stopping after the requested number of suggestions.
+ */
+@Component
+public class MovieSuggestIndex implements MovieIndex {
+
+    static final String TITLE = "title";
+    static final String CAST = "cast";
+
+    // sorts before any character of a phrase, so shorter completions come first
+    private static final char SEPARATOR = '\u0000';
+
+    // rough retained size of one map entry besides its key: tree node, Entry and the key's String header
+    private static final int ENTRY_OVERHEAD_BYTES = 40 + 24 + 24 + 16;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final NavigableMap<String, Entry> entries = new TreeMap<>();
+
+    // keys indexed per movie, needed to take a movie out again
+    private final Map<Integer, List<String>> keysByMovie = new HashMap<>();
+
+    private long estimatedBytes;
+
+    public MovieSuggestIndex(MeterRegistry meterRegistry) {
+        Gauge.builder("movie.suggest.entries", this, index -> index.size())
+                .register(meterRegistry);
+        Gauge.builder("movie.suggest.memory", this, index -> index.estimatedBytes())
+                .baseUnit("bytes")
+                .description("Estimated heap used by the autocomplete index")
+                .register(meterRegistry);
+        Gauge.builder("movie.suggest.memory.per.title", this, index -> index.estimatedBytesPerTitle())
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void index(MovieDto movie) {
+        List<String> keys = new ArrayList<>();
+        List<Entry> newEntries = new ArrayList<>();
+
+        List<String> titleWords = TextNormalizer.tokenize(movie.getTitle());
+        MovieSuggestion title = new MovieSuggestion(movie.getTitle(), TITLE, movie.getMovieId());
+        for (int i = 0; i < titleWords.size(); i++) {
+            String phrase = String.join(" ", titleWords.subList(i, titleWords.size()));
+            keys.add(phrase + SEPARATOR + TITLE + SEPARATOR + movie.getMovieId());
+            newEntries.add(new Entry(title));
+        }
+        if (movie.getMovieCast() != null) {
+            for (String castMember : movie.getMovieCast()) {
+                String phrase = String.join(" ", TextNormalizer.tokenize(castMember));
+                if (!phrase.isEmpty()) {
+                    //cast members are shared between movies, one entry counts the movies they appear in
+                    keys.add(phrase + SEPARATOR + CAST + SEPARATOR + castMember);
+                    newEntries.add(new Entry(new MovieSuggestion(castMember, CAST, null)));
+                }
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeEntries(movie.getMovieId());
+            for (int i = 0; i < keys.size(); i++) {
+                String key = keys.get(i);
+                Entry entry = entries.get(key);
+                if (entry == null) {
+                    entries.put(key, newEntries.get(i));
+                    estimatedBytes += ENTRY_OVERHEAD_BYTES + key.length();
+                } else {
+                    entry.references++;
+                }
+            }
+            keysByMovie.put(movie.getMovieId(), keys);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Integer movieId) {
+        lock.writeLock().lock();
+        try {
+            removeEntries(movieId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Returns up to limit titles and cast names starting with the prefix, or having a title word starting with it.
+     */
+    public List<MovieSuggestion> suggest(String prefix, int limit) {
+        String normalizedPrefix = String.join(" ", TextNormalizer.tokenize(prefix));
+        if (normalizedPrefix.isEmpty() || limit <= 0) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            Set<MovieSuggestion> suggestions = new LinkedHashSet<>();
+            for (Entry entry : entries.subMap(normalizedPrefix, true, normalizedPrefix + Character.MAX_VALUE, false).values()) {
+                //a title matched from two of its words is only suggested once
+                suggestions.add(entry.suggestion);
+                if (suggestions.size() == limit) {
+                    break;
+                }
+            }
+            return new ArrayList<>(suggestions);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void removeEntries(Integer movieId) {
+        List<String> keys = keysByMovie.remove(movieId);
+        if (keys == null) {
+            return;
+        }
+        for (String key : keys) {
+            Entry entry = entries.get(key);
+            if (--entry.references == 0) {
+                entries.remove(key);
+                estimatedBytes -= ENTRY_OVERHEAD_BYTES + key.length();
+            }
+        }
+    }
+
+    private int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return estimatedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private double estimatedBytesPerTitle() {
+        lock.readLock().lock();
+        try {
+            return keysByMovie.isEmpty() ? 0 : (double) estimatedBytes / keysByMovie.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private static final class Entry {
+
+        private final MovieSuggestion suggestion;
+        private int references = 1;
+
+        Entry(MovieSuggestion suggestion) {
+            this.suggestion = suggestion;
+        }
+    }
+}
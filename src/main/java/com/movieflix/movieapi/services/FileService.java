@@ -2,13 +2,39 @@ package com.movieflix.movieapi.services;
 
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
 
 public interface FileService {
 
+    /**
+     * Stores the poster of a movie like {@link #storeFile}.
+     */
     String uploadFile(String path, MultipartFile file) throws IOException;
 
-    InputStream getResourceFile(String path, String filename) throws FileNotFoundException;
+    /**
+     * Stores a file that no movie owns. It takes no reference, so it is deleted with the last movie sharing its
+     * content, and kept for good if no movie does.
+     */
+    String uploadStandaloneFile(String path, MultipartFile file) throws IOException;
+
+    /**
+     * Stores the content under its SHA-256 hash, keeping the extension of the original file name, and returns
+     * the name it was stored under. The stream is read to the end but not closed. Takes a reference, which
+     * {@link #deleteFile} drops again.
+     */
+    String storeFile(String path, InputStream content, String originalFilename) throws IOException;
+
+    Path getResourceFile(String path, String filename);
+
+    /**
+     * Deletes the file and its thumbnails, if there are any.
+     */
+    void deleteFile(String path, String filename) throws IOException;
+
+    /**
+     * Returns the strong ETag of a file stored under its content hash, null for any other name.
+     */
+    String getETag(String filename);
 }
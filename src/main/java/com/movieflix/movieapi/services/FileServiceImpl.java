@@ -1,37 +1,301 @@
 package com.movieflix.movieapi.services;
 
+import com.movieflix.movieapi.cache.PosterCache;
+import com.movieflix.movieapi.entities.PosterReference;
+import com.movieflix.movieapi.exceptions.PosterNotFoundException;
+import com.movieflix.movieapi.repositories.PosterReferenceRepository;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
+import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.UUID;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+/**
+ * Files are named after the SHA-256 hash of their content, so a name always stands for the same bytes and can be
+ * cached by clients for good. They are stored two directory levels deep, by the first two pairs of hex digits of
+ * the hash, e.g. {@code ab/cd/abcd…png}, which keeps each directory small.
+ * <p>
+ * Identical uploads share one file. Each store takes a reference in {@link PosterReference} and each delete
+ * drops one, in the transaction of the movie write; the file goes when the last reference is dropped. Both hold
+ * the lock on that row while they touch the file, so a file is never deleted under a movie that just took it.
+ * The file is moved into place or aside just before the movie write commits, so a rollback leaves nothing to
+ * undo in the database and no second connection is needed besides the one of the movie write.
+ * <p>
+ * Uploads without a movie take no reference, as nothing would ever drop it: such a file stays until a movie
+ * with the same poster is deleted, or for good if there is none.
+ * <p>
+ * Names from before, which are not hashes, are still served from the top directory.
+ */
+@Slf4j
 @Service
 public class FileServiceImpl implements FileService {
 
+    private static final Pattern CONTENT_HASHED_NAME = Pattern.compile("([0-9a-f]{64})(\\.[a-z0-9]{1,10})?");
+
+    private static final Pattern EXTENSION = Pattern.compile("\\.[a-z0-9]{1,10}");
+
+    private final ThumbnailService thumbnailService;
+    private final PosterReferenceRepository posterReferenceRepository;
+    private final PosterCache posterCache;
+    private final TransactionTemplate transaction;
+
+    public FileServiceImpl(ThumbnailService thumbnailService, PosterReferenceRepository posterReferenceRepository,
+                           PosterCache posterCache, PlatformTransactionManager transactionManager) {
+        this.thumbnailService = thumbnailService;
+        this.posterReferenceRepository = posterReferenceRepository;
+        this.posterCache = posterCache;
+
+        //joins the transaction of the movie write, if there is one
+        this.transaction = new TransactionTemplate(transactionManager);
+    }
+
     @Override
     public String uploadFile(String path, MultipartFile file) throws IOException {
-        String fileName = file.getOriginalFilename();
+        try (InputStream content = file.getInputStream()) {
+            return storeFile(path, content, file.getOriginalFilename());
+        }
+    }
+
+    @Override
+    public String uploadStandaloneFile(String path, MultipartFile file) throws IOException {
+        try (InputStream content = file.getInputStream()) {
+            return store(path, content, file.getOriginalFilename(), false);
+        }
+    }
+
+    @Override
+    public String storeFile(String path, InputStream content, String originalFilename) throws IOException {
+        return store(path, content, originalFilename, true);
+    }
 
-        String filePath = path + File.separator + fileName;
+    private String store(String path, InputStream content, String originalFilename, boolean referenced)
+            throws IOException {
+        Path directory = Paths.get(path);
+        Files.createDirectories(directory);
 
-        File f = new File(path);
-        if(!f.exists()) {
-            f.mkdir();
+        //hashed while it is written, the name is only known once the last byte is in
+        Path temporary = Files.createTempFile(directory, "upload-", ".tmp");
+        try {
+            MessageDigest digest = sha256();
+            Files.copy(new DigestInputStream(content, digest), temporary, StandardCopyOption.REPLACE_EXISTING);
+            String fileName = HexFormat.of().formatHex(digest.digest()) + extension(originalFilename);
+            Path filePath = filePath(directory, fileName);
+
+            transaction.executeWithoutResult(status -> {
+                PosterReference reference = lockReference(directory, fileName);
+                if (referenced) {
+                    reference.setReferenceCount(reference.getReferenceCount() + 1);
+                }
+
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void beforeCommit(boolean readOnly) {
+                        //an identical upload is stored already, only the reference is new
+                        if (!Files.exists(storedPath(directory, fileName))) {
+                            moveIntoPlace(temporary, filePath);
+                        }
+                    }
+
+                    @Override
+                    public void afterCommit() {
+                        //grid tiles ask for a thumbnail right away, create them before the first request comes in
+                        thumbnailService.createThumbnailsAsync(filePath);
+                    }
+
+                    @Override
+                    public void afterCompletion(int status) {
+                        deleteQuietly(temporary);
+                    }
+                });
+            });
+            return fileName;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temporary);
+            throw e;
+        }
+    }
+
+    @Override
+    public Path getResourceFile(String path, String filename) {
+
+        Path directory = Paths.get(path).toAbsolutePath().normalize();
+        Path filePath = storedPath(directory, filename).normalize();
+
+        //a name like "../application.yml" must not leave the directory
+        if (!filePath.startsWith(directory) || !Files.isRegularFile(filePath)) {
+            throw new PosterNotFoundException("File not found: " + filename);
+        }
+        return filePath;
+    }
+
+    @Override
+    public void deleteFile(String path, String filename) throws IOException {
+        Path directory = Paths.get(path);
+        if (!CONTENT_HASHED_NAME.matcher(filename).matches()) {
+            //from before content hashing, each movie had a file of its own; it goes once the movie write has
+            //committed, a rollback leaves the movie pointing at it
+            Path filePath = filePath(directory, filename);
+            transaction.executeWithoutResult(status ->
+                    TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                        @Override
+                        public void afterCommit() {
+                            deleteQuietly(filePath);
+                            deleteThumbnails(filePath);
+                            posterCache.evict(filename);
+                        }
+                    }));
+            return;
         }
 
-        Files.copy(file.getInputStream(), Paths.get(filePath));
+        transaction.executeWithoutResult(status -> {
+            PosterReference reference = lockReference(directory, filename);
+            if (reference.getReferenceCount() > 1) {
+                reference.setReferenceCount(reference.getReferenceCount() - 1);
+                return;
+            }
+            reference.setReferenceCount(0);
 
-        return fileName;
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                private Path filePath;
+                private Path deleted;
+
+                @Override
+                public void beforeCommit(boolean readOnly) {
+                    //unless the same transaction stored it again, e.g. a movie updated with the poster it had
+                    if (reference.getReferenceCount() == 0) {
+                        filePath = storedPath(directory, filename);
+                        deleted = moveAside(filePath);
+                    }
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (filePath == null) {
+                        return;
+                    }
+                    if (status == STATUS_COMMITTED) {
+                        deleteQuietly(deleted);
+                        deleteThumbnails(filePath);
+                        posterCache.evict(filename);
+                    } else if (deleted != null) {
+                        //the commit failed after the file was moved aside
+                        putBack(deleted, filePath);
+                    }
+                }
+            });
+        });
     }
 
     @Override
-    public InputStream getResourceFile(String path, String filename) throws FileNotFoundException {
+    public String getETag(String filename) {
+        Matcher matcher = CONTENT_HASHED_NAME.matcher(filename);
+        return matcher.matches() ? '"' + matcher.group(1) + '"' : null;
+    }
+
+    // inserted in the transaction of the movie write if it is missing, and locked until that completes
+    private PosterReference lockReference(Path directory, String fileName) {
+        //a file without a row was stored before references were counted, by a movie that still uses it
+        posterReferenceRepository.insertIfAbsent(fileName, Files.exists(storedPath(directory, fileName)) ? 1 : 0);
+        return posterReferenceRepository.findForUpdate(fileName).orElseThrow();
+    }
 
-        String filePath = path + File.separator + filename;
+    private void deleteThumbnails(Path filePath) {
+        try {
+            thumbnailService.deleteThumbnails(filePath);
+        } catch (IOException e) {
+            //the poster is gone already, the thumbnails are left behind
+            log.warn("Could not delete the thumbnails of {}: {}", filePath.getFileName(), e.getMessage());
+        }
+    }
 
-        return new FileInputStream(filePath);
+    private static void moveIntoPlace(Path temporary, Path filePath) {
+        try {
+            Files.createDirectories(filePath.getParent());
+            Files.move(temporary, filePath);
+        } catch (FileAlreadyExistsException e) {
+            //left behind by a commit that failed after the move, it has the same content
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // renamed next to where it was, to be deleted once the transaction has committed or put back if it has not
+    private static Path moveAside(Path filePath) {
+        if (!Files.exists(filePath)) {
+            return null;
+        }
+        try {
+            Path deleted = filePath.resolveSibling(filePath.getFileName() + ".deleted-" + UUID.randomUUID());
+            Files.move(filePath, deleted);
+            return deleted;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void putBack(Path deleted, Path filePath) {
+        try {
+            Files.move(deleted, filePath);
+        } catch (FileAlreadyExistsException e) {
+            //stored again by an upload of the same content in the meantime
+            deleteQuietly(deleted);
+        } catch (IOException e) {
+            log.warn("Could not put back poster {}: {}", filePath.getFileName(), e.getMessage());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete {}: {}", file.getFileName(), e.getMessage());
+        }
+    }
+
+    // <directory>/ab/cd/abcd….png for content hashed names, <directory>/<name> for others
+    private static Path filePath(Path directory, String fileName) {
+        if (!CONTENT_HASHED_NAME.matcher(fileName).matches()) {
+            return directory.resolve(fileName);
+        }
+        return directory.resolve(fileName.substring(0, 2)).resolve(fileName.substring(2, 4)).resolve(fileName);
+    }
+
+    // content hashed names were stored in the top directory before it was sharded, and may still be there
+    private static Path storedPath(Path directory, String fileName) {
+        Path filePath = filePath(directory, fileName);
+        return Files.exists(filePath) ? filePath : directory.resolve(fileName);
+    }
+
+    private static String extension(String originalFilename) {
+        if (originalFilename == null || originalFilename.lastIndexOf('.') < 0) {
+            return "";
+        }
+        String extension = originalFilename.substring(originalFilename.lastIndexOf('.')).toLowerCase();
+        return EXTENSION.matcher(extension).matches() ? extension : "";
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            //every Java platform has to support SHA-256
+            throw new IllegalStateException(e);
+        }
     }
 }
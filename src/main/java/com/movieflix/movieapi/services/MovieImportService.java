@@ -0,0 +1,11 @@
+package com.movieflix.movieapi.services;
+
+import com.movieflix.movieapi.dto.MovieImportResponse;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+
+public interface MovieImportService {
+
+    MovieImportResponse importMovies(MultipartFile movies, MultipartFile posters) throws IOException;
+}
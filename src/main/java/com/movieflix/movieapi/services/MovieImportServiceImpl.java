@@ -0,0 +1,394 @@
+package com.movieflix.movieapi.services;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieImportError;
+import com.movieflix.movieapi.dto.MovieImportResponse;
+import com.movieflix.movieapi.entities.Movie;
+import com.movieflix.movieapi.events.MovieChangeType;
+import com.movieflix.movieapi.events.MovieChangedEvent;
+import com.movieflix.movieapi.exceptions.InvalidPosterArchiveException;
+import com.movieflix.movieapi.repositories.MovieRepository;
+import com.movieflix.movieapi.utils.CsvUtils;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.FileSystemUtils;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.LineNumberReader;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Imports a catalog given as NDJSON or CSV rows of {@link MovieDto} plus a zip archive of their posters.
+ * Rows that cannot be imported are reported back with their line number instead of failing the whole import.
+ */
+@Slf4j
+@Service
+public class MovieImportServiceImpl implements MovieImportService {
+
+    private final MovieRepository movieRepository;
+    private final FileService fileService;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+    private final TransactionTemplate transaction;
+    private final long maxPosterSize;
+    private final long maxExtractedSize;
+    private final int maxPosterEntries;
+
+    @Value("${project.poster}")
+    private String path;
+
+    @Value("${base.url}")
+    private String baseUrl;
+
+    @Value("${project.import.batch-size}")
+    private int batchSize;
+
+    public MovieImportServiceImpl(MovieRepository movieRepository, FileService fileService, ObjectMapper objectMapper,
+                                  ApplicationEventPublisher eventPublisher, PlatformTransactionManager transactionManager,
+                                  @Value("${project.import.max-poster-size}") DataSize maxPosterSize,
+                                  @Value("${project.import.max-extracted-size}") DataSize maxExtractedSize,
+                                  @Value("${project.import.max-poster-entries}") int maxPosterEntries) {
+        this.movieRepository = movieRepository;
+        this.fileService = fileService;
+        this.objectMapper = objectMapper;
+        this.eventPublisher = eventPublisher;
+        this.transaction = new TransactionTemplate(transactionManager);
+        this.maxPosterSize = maxPosterSize.toBytes();
+        this.maxExtractedSize = maxExtractedSize.toBytes();
+        this.maxPosterEntries = maxPosterEntries;
+    }
+
+    @Override
+    public MovieImportResponse importMovies(MultipartFile movies, MultipartFile posters) throws IOException {
+        long start = System.currentTimeMillis();
+        List<MovieImportError> errors = new ArrayList<>();
+
+        //parse and validate the rows
+        List<ImportRow> rows = isCsv(movies) ? readCsv(movies, errors) : readNdjson(movies, errors);
+        int totalRows = rows.size() + errors.size();
+        rows = validate(rows, errors);
+
+        //unpack the posters of the valid rows; they are only stored with their movies, in the batch transaction
+        Path staging = Files.createTempDirectory("movie-import-");
+        try {
+            Set<String> oversized = new HashSet<>();
+            Map<String, Path> posterFiles = extractPosters(posters, rows, staging, oversized);
+            List<ImportRow> importable = new ArrayList<>();
+            for (ImportRow row : rows) {
+                if (posterFiles.containsKey(row.movie().getPoster())) {
+                    importable.add(row);
+                } else if (oversized.contains(row.movie().getPoster())) {
+                    errors.add(new MovieImportError(row.row(), "Poster " + row.movie().getPoster() + " is larger than " + maxPosterSize + " bytes!"));
+                } else {
+                    errors.add(new MovieImportError(row.row(), "Poster " + row.movie().getPoster() + " is missing from the archive!"));
+                }
+            }
+
+            //insert in batches, each in its own transaction
+            int importedRows = 0;
+            for (int from = 0; from < importable.size(); from += batchSize) {
+                importedRows += insertBatch(importable.subList(from, Math.min(from + batchSize, importable.size())), posterFiles, errors);
+            }
+
+            errors.sort(Comparator.comparingInt(MovieImportError::row));
+            log.info("Imported {} of {} movies in {} ms", importedRows, totalRows, System.currentTimeMillis() - start);
+            return new MovieImportResponse(totalRows, importedRows, errors);
+        } finally {
+            FileSystemUtils.deleteRecursively(staging);
+        }
+    }
+
+    private int insertBatch(List<ImportRow> batch, Map<String, Path> posterFiles, List<MovieImportError> errors) throws IOException {
+        try {
+            transaction.executeWithoutResult(status -> insert(batch, posterFiles));
+            return batch.size();
+        } catch (DataAccessException e) {
+            log.warn("Batch of {} movies failed, retrying row by row: {}", batch.size(), e.getMessage());
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        //the batch was rolled back as a whole, so find the offending rows one at a time
+        int imported = 0;
+        for (ImportRow row : batch) {
+            try {
+                transaction.executeWithoutResult(status -> insert(List.of(row), posterFiles));
+                imported++;
+            } catch (DataAccessException e) {
+                errors.add(new MovieImportError(row.row(), e.getMostSpecificCause().getMessage()));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+        return imported;
+    }
+
+    // the poster references are taken in the transaction of the rows, a rollback takes them and new files back
+    private void insert(List<ImportRow> rows, Map<String, Path> posterFiles) {
+        List<Movie> movies = new ArrayList<>();
+        for (ImportRow row : rows) {
+            movies.add(toMovie(row.movie(), storePoster(posterFiles.get(row.movie().getPoster()))));
+        }
+        movieRepository.insertAll(movies);
+
+        //published in the transaction, so the changes are logged with the rows and the indexes updated after commit
+        movies.forEach(this::publishCreated);
+    }
+
+    // stored under the hash of its content
+    private String storePoster(Path posterFile) {
+        try (InputStream content = Files.newInputStream(posterFile)) {
+            return fileService.storeFile(path, content, posterFile.getFileName().toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void publishCreated(Movie movie) {
+        MovieDto response = new MovieDto(
+                movie.getMovieId(),
+                movie.getReleaseYear(),
+                movie.getTitle(),
+                movie.getGenre(),
+                movie.getDirector(),
+                movie.getStudio(),
+                movie.getPoster(),
+                baseUrl + "/file/" + movie.getPoster(),
+                movie.getMovieCast()
+        );
+        eventPublisher.publishEvent(new MovieChangedEvent(MovieChangeType.CREATED, movie.getMovieId(), response));
+    }
+
+    private List<ImportRow> validate(List<ImportRow> rows, List<MovieImportError> errors) {
+        List<ImportRow> valid = new ArrayList<>();
+        Map<String, Integer> rowByPoster = new HashMap<>();
+
+        for (ImportRow row : rows) {
+            MovieDto movie = row.movie();
+            String error = null;
+            if (movie.getReleaseYear() == null) {
+                error = "Please provide movie's release year!";
+            } else if (isBlank(movie.getTitle())) {
+                error = "Please provide movie's title!";
+            } else if (isBlank(movie.getGenre())) {
+                error = "Please provide movie's genre!";
+            } else if (isBlank(movie.getDirector())) {
+                error = "Please provide movie's director!";
+            } else if (isBlank(movie.getStudio())) {
+                error = "Please provide movie's studio!";
+            } else if (isBlank(movie.getPoster())) {
+                error = "Please provide movie's poster!";
+            } else if (!movie.getPoster().equals(Paths.get(movie.getPoster()).getFileName().toString())) {
+                error = "Poster must be a plain file name!";
+            } else if (rowByPoster.containsKey(movie.getPoster())) {
+                //each archive entry is stored once and holds one reference, for one movie
+                error = "Poster is already used by row " + rowByPoster.get(movie.getPoster()) + "!";
+            }
+
+            if (error != null) {
+                errors.add(new MovieImportError(row.row(), error));
+            } else {
+                rowByPoster.put(movie.getPoster(), row.row());
+                valid.add(row);
+            }
+        }
+        return valid;
+    }
+
+    // returns the unpacked file per poster file name; entries over the poster size limit are only named in oversized
+    private Map<String, Path> extractPosters(MultipartFile posters, List<ImportRow> rows, Path staging,
+                                             Set<String> oversized) throws IOException {
+        Set<String> wanted = new HashSet<>();
+        rows.forEach(row -> wanted.add(row.movie().getPoster()));
+
+        //an archive tells the size of its entries but need not tell the truth, so the bytes are counted as they
+        //are unpacked; skipped entries are unpacked too, to find the next one
+        Map<String, Path> posterFiles = new HashMap<>();
+        long extracted = 0;
+        int entries = 0;
+        try (ZipInputStream zip = new ZipInputStream(posters.getInputStream())) {
+            ZipEntry entry;
+            while ((entry = zip.getNextEntry()) != null) {
+                if (++entries > maxPosterEntries) {
+                    throw new InvalidPosterArchiveException("Poster archive has more than " + maxPosterEntries + " entries!");
+                }
+                long remaining = maxExtractedSize - extracted;
+
+                //only the file name of an entry is matched, rows only accept plain file names
+                String fileName = Paths.get(entry.getName()).getFileName().toString();
+                long size;
+                if (!entry.isDirectory() && wanted.contains(fileName) && !posterFiles.containsKey(fileName)
+                        && !oversized.contains(fileName)) {
+                    Path posterFile = staging.resolve(fileName);
+                    try (OutputStream out = Files.newOutputStream(posterFile)) {
+                        size = copy(zip, out, Math.min(maxPosterSize, remaining));
+                    }
+                    if (size > maxPosterSize) {
+                        Files.delete(posterFile);
+                        oversized.add(fileName);
+                        size += copy(zip, OutputStream.nullOutputStream(), remaining - size);
+                    } else {
+                        posterFiles.put(fileName, posterFile);
+                    }
+                } else {
+                    size = copy(zip, OutputStream.nullOutputStream(), remaining);
+                }
+
+                extracted += size;
+                if (extracted > maxExtractedSize) {
+                    throw new InvalidPosterArchiveException("Poster archive unpacks to more than " + maxExtractedSize + " bytes!");
+                }
+            }
+        }
+        return posterFiles;
+    }
+
+    // copies until the end of the input or one byte past the limit, returns the number of bytes read
+    private static long copy(InputStream in, OutputStream out, long limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        long copied = 0;
+        int read;
+        while (copied <= limit && (read = in.read(buffer, 0, (int) Math.min(buffer.length, limit + 1 - copied))) >= 0) {
+            out.write(buffer, 0, read);
+            copied += read;
+        }
+        return copied;
+    }
+
+    private List<ImportRow> readNdjson(MultipartFile movies, List<MovieImportError> errors) throws IOException {
+        List<ImportRow> rows = new ArrayList<>();
+        try (BufferedReader reader = newReader(movies.getInputStream())) {
+            String line;
+            int lineNumber = 0;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                try {
+                    rows.add(new ImportRow(lineNumber, objectMapper.readValue(line, MovieDto.class)));
+                } catch (JsonProcessingException e) {
+                    errors.add(new MovieImportError(lineNumber, "Malformed row: " + e.getOriginalMessage()));
+                }
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Reads CSV with a header naming the columns releaseYear, title, genre, director, studio, poster and
+     * movieCast; cast members are separated by '|'.
+     */
+    private List<ImportRow> readCsv(MultipartFile movies, List<MovieImportError> errors) throws IOException {
+        List<ImportRow> rows = new ArrayList<>();
+        try (LineNumberReader reader = new LineNumberReader(newReader(movies.getInputStream()))) {
+            String header = CsvUtils.readRecord(reader);
+            if (header == null) {
+                return rows;
+            }
+            List<String> columns = CsvUtils.parseLine(header);
+
+            String record;
+            //a row is reported by the line it starts on, quoted fields may span lines
+            int lineNumber = reader.getLineNumber() + 1;
+            while ((record = CsvUtils.readRecord(reader)) != null) {
+                int recordLineNumber = lineNumber;
+                lineNumber = reader.getLineNumber() + 1;
+                if (record.isBlank()) {
+                    continue;
+                }
+                List<String> values = CsvUtils.parseLine(record);
+                if (values.size() != columns.size()) {
+                    errors.add(new MovieImportError(recordLineNumber, "Expected " + columns.size() + " columns but found " + values.size() + "!"));
+                    continue;
+                }
+                try {
+                    rows.add(new ImportRow(recordLineNumber, toMovieDto(columns, values)));
+                } catch (NumberFormatException e) {
+                    errors.add(new MovieImportError(recordLineNumber, "Release year is not a number!"));
+                }
+            }
+        }
+        return rows;
+    }
+
+    private static MovieDto toMovieDto(List<String> columns, List<String> values) {
+        MovieDto movie = new MovieDto();
+        for (int i = 0; i < columns.size(); i++) {
+            String value = values.get(i);
+            switch (columns.get(i)) {
+                case "releaseYear" -> movie.setReleaseYear(value.isBlank() ? null : Integer.valueOf(value.trim()));
+                case "title" -> movie.setTitle(value);
+                case "genre" -> movie.setGenre(value);
+                case "director" -> movie.setDirector(value);
+                case "studio" -> movie.setStudio(value);
+                case "poster" -> movie.setPoster(value);
+                case "movieCast" -> movie.setMovieCast(value.isBlank()
+                        ? new LinkedHashSet<>()
+                        : new LinkedHashSet<>(Arrays.stream(value.split(Pattern.quote(CsvUtils.LIST_SEPARATOR))).map(String::trim).toList()));
+                default -> {
+                    //unknown columns are ignored
+                }
+            }
+        }
+        return movie;
+    }
+
+    private static Movie toMovie(MovieDto movieDto, String poster) {
+        return new Movie(
+                null,
+                movieDto.getReleaseYear(),
+                movieDto.getTitle(),
+                movieDto.getGenre(),
+                movieDto.getDirector(),
+                movieDto.getStudio(),
+                poster,
+                movieDto.getMovieCast()
+        );
+    }
+
+    private static boolean isCsv(MultipartFile movies) {
+        String fileName = movies.getOriginalFilename();
+        return "text/csv".equals(movies.getContentType()) || (fileName != null && fileName.toLowerCase().endsWith(".csv"));
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.isBlank();
+    }
+
+    private static BufferedReader newReader(InputStream inputStream) {
+        return new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+    }
+
+    private record ImportRow(int row, MovieDto movie) {
+    }
+}
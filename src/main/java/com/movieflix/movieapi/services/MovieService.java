@@ -1,11 +1,25 @@
 package com.movieflix.movieapi.services;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.movieflix.movieapi.dto.CatalogVersion;
+import com.movieflix.movieapi.dto.MovieChangesResponse;
+import com.movieflix.movieapi.dto.MovieCursorPageResponse;
 import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieExport;
+import com.movieflix.movieapi.dto.MovieFacetResponse;
+import com.movieflix.movieapi.dto.MovieFilter;
 import com.movieflix.movieapi.dto.MoviePageResponse;
+import com.movieflix.movieapi.dto.MovieSliceResponse;
+import com.movieflix.movieapi.dto.MovieStats;
+import com.movieflix.movieapi.dto.MovieSuggestion;
+import com.movieflix.movieapi.dto.MovieVersion;
+import com.movieflix.movieapi.dto.SerializedMovie;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface MovieService {
 
@@ -13,13 +27,41 @@ public interface MovieService {
 
     MovieDto getMovie(Integer movieId);
 
+    SerializedMovie getSerializedMovie(Integer movieId);
+
+    MovieVersion getMovieVersion(Integer movieId);
+
     List<MovieDto> getAllMovies();
 
+    void streamAllMovies(Consumer<MovieDto> consumer);
+
+    void exportMovies(Instant updatedSince, Consumer<MovieExport> consumer);
+
     MovieDto updateMovie(Integer movieId, MovieDto movieDto, MultipartFile file) throws IOException;
 
+    MovieDto patchMovie(Integer movieId, JsonNode patch, MultipartFile file) throws IOException;
+
     String deleteMovie(Integer movieId) throws IOException;
 
+    CatalogVersion getCatalogVersion();
+
     MoviePageResponse getAllMoviesWithPagination(Integer pageNumber, Integer pageSize);
 
     MoviePageResponse getAllMoviesWithPaginationAndSorting(Integer pageNumber, Integer pageSize, String sortBy, String dir);
+
+    MovieSliceResponse getAllMoviesWithSlice(Integer pageNumber, Integer pageSize, String sortBy, String dir);
+
+    MovieCursorPageResponse getAllMoviesWithCursor(String cursor, Integer pageSize, String sortBy, String dir);
+
+    List<MovieDto> searchMovies(String query, Integer limit);
+
+    List<MovieSuggestion> suggestMovies(String prefix, Integer limit);
+
+    List<MovieDto> getSimilarMovies(Integer movieId, Integer limit);
+
+    MovieStats getMovieStats();
+
+    MovieChangesResponse getChanges(Long since, Integer limit);
+
+    MovieFacetResponse getMoviesWithFacets(MovieFilter filter, Integer pageNumber, Integer pageSize);
 }
@@ -1,31 +1,98 @@
 package com.movieflix.movieapi.services;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movieflix.movieapi.cache.MovieCache;
+import com.movieflix.movieapi.cache.MovieCount;
+import com.movieflix.movieapi.dto.CatalogVersion;
+import com.movieflix.movieapi.dto.MovieChangeDto;
+import com.movieflix.movieapi.dto.MovieChangesResponse;
+import com.movieflix.movieapi.dto.MovieCursorPageResponse;
 import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieExport;
+import com.movieflix.movieapi.dto.MovieExportRow;
+import com.movieflix.movieapi.dto.MovieFacetResponse;
+import com.movieflix.movieapi.dto.MovieFilter;
+import com.movieflix.movieapi.dto.MovieCastMember;
 import com.movieflix.movieapi.dto.MoviePageResponse;
+import com.movieflix.movieapi.dto.MovieSliceResponse;
+import com.movieflix.movieapi.dto.MovieStats;
+import com.movieflix.movieapi.dto.MovieSuggestion;
+import com.movieflix.movieapi.dto.MovieSummary;
+import com.movieflix.movieapi.dto.MovieVersion;
+import com.movieflix.movieapi.dto.SerializedMovie;
 import com.movieflix.movieapi.entities.Movie;
-import com.movieflix.movieapi.exceptions.FileExistsException;
+import com.movieflix.movieapi.entities.MovieChange;
+import com.movieflix.movieapi.events.MovieChangeType;
+import com.movieflix.movieapi.events.MovieChangedEvent;
+import com.movieflix.movieapi.exceptions.InvalidCursorException;
+import com.movieflix.movieapi.exceptions.InvalidLimitException;
+import com.movieflix.movieapi.exceptions.InvalidPatchException;
 import com.movieflix.movieapi.exceptions.MovieNotFoundException;
+import com.movieflix.movieapi.exceptions.SimilarMoviesDisabledException;
+import com.movieflix.movieapi.repositories.MovieChangeRepository;
 import com.movieflix.movieapi.repositories.MovieRepository;
+import com.movieflix.movieapi.search.MovieSearchIndex;
+import com.movieflix.movieapi.search.MovieSimilarityIndex;
+import com.movieflix.movieapi.search.MovieStatsIndex;
+import com.movieflix.movieapi.search.MovieSuggestIndex;
+import com.movieflix.movieapi.utils.AppConstants;
+import com.movieflix.movieapi.utils.MovieCursor;
+import com.movieflix.movieapi.utils.MovieSort;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ReflectionUtils;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.File;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.UncheckedIOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
 @Service
 public class MovieServiceImpl implements MovieService {
 
+    //number of streamed movies whose cast is loaded with one query
+    private static final int STREAM_CHUNK_SIZE = 100;
+
     private final MovieRepository movieRepository;
     private final FileService fileService;
+    private final MovieCache movieCache;
+    private final MovieCount movieCount;
+    private final MovieSearchIndex movieSearchIndex;
+    private final MovieSuggestIndex movieSuggestIndex;
+    private final MovieSimilarityIndex movieSimilarityIndex;
+    private final MovieStatsIndex movieStatsIndex;
+    private final MovieChangeRepository movieChangeRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readOnlyTransaction;
 
     @Value("${project.poster}")
     private String path;
@@ -33,19 +100,39 @@ public class MovieServiceImpl implements MovieService {
     @Value("${base.url}")
     private String baseUrl;
 
-    public MovieServiceImpl(MovieRepository movieRepository, FileService fileService) {
+    @Value("${project.cache.responses.gzip}")
+    private boolean gzipResponses;
+
+    public MovieServiceImpl(MovieRepository movieRepository, FileService fileService,
+                            MovieCache movieCache, MovieCount movieCount, MovieSearchIndex movieSearchIndex,
+                            MovieSuggestIndex movieSuggestIndex, ObjectProvider<MovieSimilarityIndex> movieSimilarityIndex,
+                            MovieStatsIndex movieStatsIndex, MovieChangeRepository movieChangeRepository,
+                            ApplicationEventPublisher eventPublisher, ObjectMapper objectMapper,
+                            PlatformTransactionManager transactionManager) {
         this.movieRepository = movieRepository;
         this.fileService = fileService;
+        this.movieCache = movieCache;
+        this.movieCount = movieCount;
+        this.movieSearchIndex = movieSearchIndex;
+        this.movieSuggestIndex = movieSuggestIndex;
+        //null unless project.similar.enabled, the index takes hundreds of MB for a large catalog
+        this.movieSimilarityIndex = movieSimilarityIndex.getIfAvailable();
+        this.movieStatsIndex = movieStatsIndex;
+        this.movieChangeRepository = movieChangeRepository;
+        this.eventPublisher = eventPublisher;
+        this.objectMapper = objectMapper;
+
+        //cache loaders run in their own read-only transaction (flush mode MANUAL), so cache hits never open one
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
     }
 
 
     @Override
+    @Transactional
     public MovieDto addMovie(MovieDto movieDto, MultipartFile file) throws IOException {
 
-        //upload file
-        if (Files.exists(Paths.get(path + File.separator + file.getOriginalFilename()))) {
-            throw new FileExistsException("File already exists! Please enter another file name!");
-        }
+        //upload file, stored under the hash of its content
         String uploadedFileName = fileService.uploadFile(path, file);
 
         //set the value of field "poster" as filename
@@ -69,8 +156,8 @@ public class MovieServiceImpl implements MovieService {
         //generate the posterUrl
         String posterUrl = baseUrl + "/file/" + uploadedFileName;
 
-        //map movie object to dto object and return it
-        return new MovieDto(
+        //map movie object to dto object
+        MovieDto response = new MovieDto(
                 savedMovie.getMovieId(),
                 savedMovie.getReleaseYear(),
                 savedMovie.getTitle(),
@@ -81,60 +168,149 @@ public class MovieServiceImpl implements MovieService {
                 posterUrl,
                 savedMovie.getMovieCast()
         );
+
+        eventPublisher.publishEvent(new MovieChangedEvent(MovieChangeType.CREATED, savedMovie.getMovieId(), response));
+        return response;
     }
 
     @Override
     public MovieDto getMovie(Integer movieId) {
+        return movieCache.getMovie(movieId, this::loadMovie);
+    }
 
-        // check the data in db and if exists, fetch the data of given id
-        Movie movie = movieRepository.findById(movieId).orElseThrow( () -> new MovieNotFoundException("Movie not found with ID = " + movieId));
+    private MovieDto loadMovie(Integer movieId) {
+        return readOnlyTransaction.execute(status -> {
 
-        //generate posterUrl
-        String posterUrl = baseUrl + "/file/" + movie.getPoster();
+            // check the data in db and if exists, fetch the data of given id
+            //an entity, unlike a projection, is served from the second-level cache
+            Movie movie = movieRepository.findById(movieId).orElseThrow( () -> new MovieNotFoundException("Movie not found with ID = " + movieId));
 
-        //map to movie dto object and return it
-        return new MovieDto(
-                movie.getMovieId(),
-                movie.getReleaseYear(),
-                movie.getTitle(),
-                movie.getGenre(),
-                movie.getDirector(),
-                movie.getStudio(),
-                movie.getPoster(),
-                posterUrl,
-                movie.getMovieCast()
-        );
+            //map to movie dto object and return it, copying the cast while the session is open
+            return mapToMovieDto(new MovieSummary(movie.getMovieId(), movie.getReleaseYear(), movie.getTitle(),
+                    movie.getGenre(), movie.getDirector(), movie.getStudio(), movie.getPoster()),
+                    new HashSet<>(movie.getMovieCast()));
+        });
+    }
+
+    @Override
+    public SerializedMovie getSerializedMovie(Integer movieId) {
+        return movieCache.getMovieResponse(movieId, id -> serialize(getMovie(id)));
+    }
+
+    private SerializedMovie serialize(MovieDto movieDto) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(movieDto);
+            if (!gzipResponses) {
+                return new SerializedMovie(json, null);
+            }
+
+            ByteArrayOutputStream gzip = new ByteArrayOutputStream(json.length);
+            try (GZIPOutputStream out = new GZIPOutputStream(gzip)) {
+                out.write(json);
+            }
+            return new SerializedMovie(json, gzip.toByteArray());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Could not serialize movie " + movieDto.getMovieId(), e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @Override
+    public MovieVersion getMovieVersion(Integer movieId) {
+        return movieCache.getMovieVersion(movieId, id -> readOnlyTransaction.execute(status ->
+                movieRepository.findVersionById(id).orElseThrow(() -> new MovieNotFoundException("Movie not found with ID = " + id))));
     }
 
     @Override
     public List<MovieDto> getAllMovies() {
+        return movieCache.getAllMovies(this::loadAllMovies);
+    }
 
-        // fetch all data from db
-        List<Movie> movies = movieRepository.findAll();
+    private List<MovieDto> loadAllMovies() {
+        return readOnlyTransaction.execute(status -> {
 
-        List<MovieDto> movieDtos = new ArrayList<>();
+            // fetch all data from db
+            List<MovieSummary> movies = movieRepository.findAllSummaries();
+            Map<Integer, Set<String>> movieCasts = groupByMovie(movieRepository.findAllCast());
 
-        //iterate through the list, generate posterUrl for each movie object
-        for (Movie movie : movies) {
-            String posterUrl = baseUrl + "/file/" + movie.getPoster();
-            MovieDto response = new MovieDto(
-                    movie.getMovieId(),
-                    movie.getReleaseYear(),
-                    movie.getTitle(),
-                    movie.getGenre(),
-                    movie.getDirector(),
-                    movie.getStudio(),
-                    movie.getPoster(),
-                    posterUrl,
-                    movie.getMovieCast()
-            );
-            movieDtos.add(response);
+            List<MovieDto> movieDtos = new ArrayList<>();
+
+            //iterate through the list, generate posterUrl for each movie object
+            for (MovieSummary movie : movies) {
+                movieDtos.add(mapToMovieDto(movie, movieCasts.get(movie.movieId())));
+            }
+            //and map to movieDto object
+            return movieDtos;
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamAllMovies(Consumer<MovieDto> consumer) {
+
+        try (Stream<MovieSummary> movies = movieRepository.streamAllSummaries()) {
+            List<MovieSummary> chunk = new ArrayList<>(STREAM_CHUNK_SIZE);
+            movies.forEach(movie -> {
+                chunk.add(movie);
+                if (chunk.size() == STREAM_CHUNK_SIZE) {
+                    writeChunk(chunk, consumer);
+                }
+            });
+            writeChunk(chunk, consumer);
         }
-        //and map to movieDto object
-        return movieDtos;
+    }
+
+    private void writeChunk(List<MovieSummary> chunk, Consumer<MovieDto> consumer) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        mapToMovieDtos(chunk).forEach(consumer);
+
+        //projections are not managed, so nothing but the chunk itself has to be released
+        chunk.clear();
     }
 
     @Override
+    @Transactional(readOnly = true)
+    public void exportMovies(Instant updatedSince, Consumer<MovieExport> consumer) {
+
+        //the rows of one movie arrive next to each other, so only the current movie is held in memory
+        try (Stream<MovieExportRow> rows = movieRepository.streamExportRows(updatedSince)) {
+            MovieExportRow[] current = {null};
+            Set<String> movieCast = new HashSet<>();
+            rows.forEach(row -> {
+                if (current[0] != null && !current[0].movieId().equals(row.movieId())) {
+                    consumer.accept(toMovieExport(current[0], movieCast));
+                    movieCast.clear();
+                }
+                current[0] = row;
+                if (row.castMember() != null) {
+                    movieCast.add(row.castMember());
+                }
+            });
+            if (current[0] != null) {
+                consumer.accept(toMovieExport(current[0], movieCast));
+            }
+        }
+    }
+
+    private static MovieExport toMovieExport(MovieExportRow row, Set<String> movieCast) {
+        return new MovieExport(
+                row.movieId(),
+                row.releaseYear(),
+                row.title(),
+                row.genre(),
+                row.director(),
+                row.studio(),
+                row.poster(),
+                row.updatedAt(),
+                Set.copyOf(movieCast)
+        );
+    }
+
+    @Override
+    @Transactional
     public MovieDto updateMovie(Integer movieId, MovieDto movieDto, MultipartFile file) throws IOException {
 
         //check if movie exists
@@ -144,33 +320,28 @@ public class MovieServiceImpl implements MovieService {
         String fileName = movie.getPoster();
 
         if (file != null) {
-            Files.delete(Paths.get(path + File.separator + fileName));
+            fileService.deleteFile(path, fileName);
             fileName = fileService.uploadFile(path, file);
         }
 
         //set the value of field "poster" depending on the step above
         movieDto.setPoster(fileName);
 
-        //map movieDto to movie object
-        Movie updatedMovie = new Movie(
-                movieId,
-                movieDto.getReleaseYear(),
-                movieDto.getTitle(),
-                movieDto.getGenre(),
-                movieDto.getDirector(),
-                movieDto.getStudio(),
-                movieDto.getPoster(),
-                movieDto.getMovieCast()
-        );
-
-        //update movie
-        movieRepository.save(updatedMovie);
+        //update the managed movie, Hibernate increments its version and update time on flush
+        movie.setReleaseYear(movieDto.getReleaseYear());
+        movie.setTitle(movieDto.getTitle());
+        movie.setGenre(movieDto.getGenre());
+        movie.setDirector(movieDto.getDirector());
+        movie.setStudio(movieDto.getStudio());
+        movie.setPoster(movieDto.getPoster());
+        movie.setMovieCast(movieDto.getMovieCast());
+        Movie updatedMovie = movieRepository.saveAndFlush(movie);
 
         //generate posterUrl
         String posterUrl = baseUrl + "/file/" + fileName;
 
-        //map movie object to dto object and return it
-        return new MovieDto(
+        //map movie object to dto object
+        MovieDto response = new MovieDto(
                 updatedMovie.getMovieId(),
                 updatedMovie.getReleaseYear(),
                 updatedMovie.getTitle(),
@@ -181,19 +352,121 @@ public class MovieServiceImpl implements MovieService {
                 posterUrl,
                 updatedMovie.getMovieCast()
         );
+
+        eventPublisher.publishEvent(new MovieChangedEvent(MovieChangeType.UPDATED, movieId, response));
+        return response;
+    }
+
+    @Override
+    @Transactional
+    public MovieDto patchMovie(Integer movieId, JsonNode patch, MultipartFile file) throws IOException {
+
+        //check if movie exists
+        Movie movie = movieRepository.findById(movieId).orElseThrow( () -> new MovieNotFoundException("Movie not found with ID = " + movieId));
+
+        if (!patch.isObject()) {
+            throw new InvalidPatchException("Patch must be a JSON object!");
+        }
+
+        //apply the fields present in the patch (JSON merge patch), the others stay as they are
+        boolean changed = false;
+        for (Iterator<Map.Entry<String, JsonNode>> fields = patch.fields(); fields.hasNext(); ) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            String name = field.getKey();
+            JsonNode value = field.getValue();
+            changed |= switch (name) {
+                case "releaseYear" -> patchField(movie.getReleaseYear(), requiredInt(name, value), movie::setReleaseYear);
+                case "title" -> patchField(movie.getTitle(), requiredText(name, value), movie::setTitle);
+                case "genre" -> patchField(movie.getGenre(), requiredText(name, value), movie::setGenre);
+                case "director" -> patchField(movie.getDirector(), requiredText(name, value), movie::setDirector);
+                case "studio" -> patchField(movie.getStudio(), requiredText(name, value), movie::setStudio);
+                case "movieCast" -> patchCast(movie.getMovieCast(), value);
+                default -> throw new InvalidPatchException("Field " + name + " cannot be patched!");
+            };
+        }
+
+        //the poster is only replaced when a new file is sent
+        if (file != null) {
+            fileService.deleteFile(path, movie.getPoster());
+            movie.setPoster(fileService.uploadFile(path, file));
+            changed = true;
+        }
+
+        //a change of the cast alone only bumps the version, the update time has to be set explicitly
+        if (changed) {
+            movie.setUpdatedAt(Instant.now());
+        }
+
+        MovieDto response = new MovieDto(
+                movie.getMovieId(),
+                movie.getReleaseYear(),
+                movie.getTitle(),
+                movie.getGenre(),
+                movie.getDirector(),
+                movie.getStudio(),
+                movie.getPoster(),
+                baseUrl + "/file/" + movie.getPoster(),
+                new HashSet<>(movie.getMovieCast())
+        );
+
+        if (changed) {
+            eventPublisher.publishEvent(new MovieChangedEvent(MovieChangeType.UPDATED, movieId, response));
+        }
+        return response;
+    }
+
+    private static <T> boolean patchField(T current, T value, Consumer<T> setter) {
+        if (Objects.equals(current, value)) {
+            return false;
+        }
+        setter.accept(value);
+        return true;
+    }
+
+    //changes the cast in place, so Hibernate only deletes and inserts the cast members that differ
+    private static boolean patchCast(Set<String> movieCast, JsonNode value) {
+        Set<String> patched = new HashSet<>();
+        if (!value.isNull()) {
+            if (!value.isArray()) {
+                throw new InvalidPatchException("movieCast must be an array of names!");
+            }
+            value.forEach(castMember -> patched.add(requiredText("movieCast", castMember)));
+        }
+        if (movieCast.equals(patched)) {
+            return false;
+        }
+        movieCast.retainAll(patched);
+        movieCast.addAll(patched);
+        return true;
+    }
+
+    private static String requiredText(String name, JsonNode value) {
+        if (!value.isTextual() || value.asText().isBlank()) {
+            throw new InvalidPatchException(name + " must be a non-blank string!");
+        }
+        return value.asText();
+    }
+
+    private static Integer requiredInt(String name, JsonNode value) {
+        if (!value.isInt()) {
+            throw new InvalidPatchException(name + " must be a number!");
+        }
+        return value.asInt();
     }
 
     @Override
+    @Transactional
     public String deleteMovie(Integer movieId) throws IOException {
 
         //check if movie object exists
         Movie movie = movieRepository.findById(movieId).orElseThrow( () -> new MovieNotFoundException("Movie not found with ID = " + movieId));
 
         //delete associated file
-        Files.deleteIfExists(Paths.get(path + File.separator + movie.getPoster()));
+        fileService.deleteFile(path, movie.getPoster());
 
         //delete movie
         movieRepository.delete(movie);
+        eventPublisher.publishEvent(new MovieChangedEvent(MovieChangeType.DELETED, movieId, null));
 
         //return success message
         String movieName = movie.getTitle();
@@ -201,65 +474,271 @@ public class MovieServiceImpl implements MovieService {
         return movieName + " with ID = " + id + " has been successfully deleted!";
     }
 
+    @Override
+    public CatalogVersion getCatalogVersion() {
+        return movieCache.getCatalogVersion(() -> readOnlyTransaction.execute(status -> movieRepository.findCatalogVersion()));
+    }
+
     @Override
     public MoviePageResponse getAllMoviesWithPagination(Integer pageNumber, Integer pageSize) {
+        return movieCache.getPage(new MovieCache.PageKey(pageNumber, pageSize, null, null),
+                () -> loadMoviesPage(pageNumber, pageSize));
+    }
+
+    private MoviePageResponse loadMoviesPage(Integer pageNumber, Integer pageSize) {
         Pageable pageable = PageRequest.of(pageNumber, pageSize);
 
-        Page<Movie> moviePages= movieRepository.findAll(pageable);
-        List<Movie> movies = moviePages.getContent();
+        return readOnlyTransaction.execute(status -> {
+            Page<MovieSummary> moviePages= movieRepository.findAllSummaries(pageable);
 
-        List<MovieDto> movieDtos = new ArrayList<>();
+            //generate posterUrl for each movie object and attach its cast
+            List<MovieDto> movieDtos = mapToMovieDtos(moviePages.getContent());
 
-        //iterate through the list, generate posterUrl for each movie object
-        for (Movie movie : movies) {
-            String posterUrl = baseUrl + "/file/" + movie.getPoster();
-            MovieDto response = new MovieDto(
-                    movie.getMovieId(),
-                    movie.getReleaseYear(),
-                    movie.getTitle(),
-                    movie.getGenre(),
-                    movie.getDirector(),
-                    movie.getStudio(),
-                    movie.getPoster(),
-                    posterUrl,
-                    movie.getMovieCast()
-            );
-            movieDtos.add(response);
-        }
-        return new MoviePageResponse(movieDtos, pageNumber, pageSize, (int) moviePages.getTotalElements(),
-                moviePages.getTotalPages(), moviePages.isLast());
+            return new MoviePageResponse(movieDtos, pageNumber, pageSize, (int) moviePages.getTotalElements(),
+                    moviePages.getTotalPages(), moviePages.isLast());
+        });
     }
 
     @Override
     public MoviePageResponse getAllMoviesWithPaginationAndSorting(Integer pageNumber, Integer pageSize, String sortBy, String dir) {
+        MovieSort movieSort = MovieSort.of(sortBy, dir);
+        return movieCache.getPage(new MovieCache.PageKey(pageNumber, pageSize, movieSort.sortBy(), movieSort.dir()),
+                () -> loadSortedMoviesPage(pageNumber, pageSize, movieSort));
+    }
 
-        Sort sort = dir.equalsIgnoreCase("asc") ? Sort.by(sortBy).ascending() : Sort.by(sortBy).descending();
+    private MoviePageResponse loadSortedMoviesPage(Integer pageNumber, Integer pageSize, MovieSort movieSort) {
+
+        Sort sort = sortOf(movieSort);
 
         Pageable pageable = PageRequest.of(pageNumber, pageSize, sort);
 
-        Page<Movie> moviePages= movieRepository.findAll(pageable);
-        List<Movie> movies = moviePages.getContent();
+        return readOnlyTransaction.execute(status -> {
+            Page<MovieSummary> moviePages= movieRepository.findAllSummaries(pageable);
+
+            //generate posterUrl for each movie object and attach its cast
+            List<MovieDto> movieDtos = mapToMovieDtos(moviePages.getContent());
+
+            return new MoviePageResponse(movieDtos, pageNumber, pageSize, (int) moviePages.getTotalElements(),
+                    moviePages.getTotalPages(), moviePages.isLast());
+        });
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MovieSliceResponse getAllMoviesWithSlice(Integer pageNumber, Integer pageSize, String sortBy, String dir) {
+        Pageable pageable = PageRequest.of(pageNumber, pageSize, sortOf(MovieSort.of(sortBy, dir)));
+
+        Slice<MovieSummary> movieSlice = movieRepository.findSummarySlice(pageable);
+
+        //the total comes from the background count, not from a count query per request
+        return new MovieSliceResponse(mapToMovieDtos(movieSlice.getContent()), pageNumber, pageSize,
+                movieSlice.hasNext(), movieCount.get());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MovieCursorPageResponse getAllMoviesWithCursor(String cursor, Integer pageSize, String sortBy, String dir) {
+
+        MovieSort movieSort = MovieSort.of(sortBy, dir);
+        String direction = movieSort.dir();
+
+        //movieId breaks ties, so the last row of a page identifies the position uniquely
+        Sort sort = sortOf(movieSort);
+
+        KeysetScrollPosition position = ScrollPosition.keyset();
+        if (cursor != null && !cursor.isBlank()) {
+            MovieCursor movieCursor = MovieCursor.decode(cursor);
+            if (!sortBy.equals(movieCursor.sortBy()) || !direction.equals(movieCursor.dir())) {
+                throw new InvalidCursorException("Cursor was issued for a different sort order!");
+            }
+            position = ScrollPosition.forward(checkCursorKeys(movieCursor.keys(), sortBy));
+        }
+
+        Window<Movie> movieWindow = movieRepository.findAllBy(position, sort, Limit.of(pageSize));
+
+        List<MovieDto> movieDtos = mapToMovieDtos(movieWindow.map(movie -> new MovieSummary(
+                movie.getMovieId(),
+                movie.getReleaseYear(),
+                movie.getTitle(),
+                movie.getGenre(),
+                movie.getDirector(),
+                movie.getStudio(),
+                movie.getPoster()
+        )).getContent());
+
+        String nextCursor = null;
+        if (movieWindow.hasNext()) {
+            KeysetScrollPosition last = (KeysetScrollPosition) movieWindow.positionAt(movieWindow.size() - 1);
+            nextCursor = new MovieCursor(sortBy, direction, last.getKeys()).encode();
+        }
+        return new MovieCursorPageResponse(movieDtos, pageSize, nextCursor, !movieWindow.hasNext());
+    }
+
+    @Override
+    public List<MovieDto> searchMovies(String query, Integer limit) {
 
         List<MovieDto> movieDtos = new ArrayList<>();
+        for (Integer movieId : movieSearchIndex.search(query, Math.min(limit, AppConstants.MAX_SEARCH_LIMIT))) {
+            try {
+                movieDtos.add(getMovie(movieId));
+            } catch (MovieNotFoundException e) {
+                //deleted after the index was read, the index drops it once the delete has committed
+            }
+        }
+        return movieDtos;
+    }
 
-        //iterate through the list, generate posterUrl for each movie object
-        for (Movie movie : movies) {
-            String posterUrl = baseUrl + "/file/" + movie.getPoster();
-            MovieDto response = new MovieDto(
-                    movie.getMovieId(),
-                    movie.getReleaseYear(),
-                    movie.getTitle(),
-                    movie.getGenre(),
-                    movie.getDirector(),
-                    movie.getStudio(),
-                    movie.getPoster(),
-                    posterUrl,
-                    movie.getMovieCast()
-            );
-            movieDtos.add(response);
+    @Override
+    public List<MovieSuggestion> suggestMovies(String prefix, Integer limit) {
+
+        //answered from the index alone, no movie is loaded
+        return movieSuggestIndex.suggest(prefix, Math.min(limit, AppConstants.MAX_SUGGEST_LIMIT));
+    }
+
+    @Override
+    public List<MovieDto> getSimilarMovies(Integer movieId, Integer limit) {
+        if (movieSimilarityIndex == null) {
+            throw new SimilarMoviesDisabledException("Similar movies are not enabled on this server!");
         }
-        return new MoviePageResponse(movieDtos, pageNumber, pageSize, (int) moviePages.getTotalElements(),
-                moviePages.getTotalPages(), moviePages.isLast());
+
+        //throws for an unknown movie instead of answering with an empty list
+        getMovie(movieId);
+
+        List<MovieDto> movieDtos = new ArrayList<>();
+        for (Integer similarId : movieSimilarityIndex.similar(movieId, limit)) {
+            try {
+                movieDtos.add(getMovie(similarId));
+            } catch (MovieNotFoundException e) {
+                //deleted after the index was read, the index drops it once the delete has committed
+            }
+        }
+        return movieDtos;
+    }
+
+    @Override
+    public MovieStats getMovieStats() {
+        return movieStatsIndex.stats();
     }
 
+    @Override
+    public MovieChangesResponse getChanges(Long since, Integer limit) {
+
+        if (limit < 1) {
+            throw new InvalidLimitException("Limit must be at least 1!");
+        }
+
+        //one extra change tells whether there are more
+        int pageSize = Math.min(limit, AppConstants.MAX_CHANGES_LIMIT);
+        List<MovieChange> changes = readOnlyTransaction.execute(status ->
+                movieChangeRepository.findByChangeIdGreaterThanOrderByChangeId(since, Limit.of(pageSize + 1)));
+
+        boolean hasMore = changes.size() > pageSize;
+        if (hasMore) {
+            changes = changes.subList(0, pageSize);
+        }
+
+        List<MovieChangeDto> changeDtos = new ArrayList<>(changes.size());
+        for (MovieChange change : changes) {
+            MovieDto movie = null;
+            if (change.getType() != MovieChangeType.DELETED) {
+                try {
+                    movie = getMovie(change.getMovieId());
+                } catch (MovieNotFoundException e) {
+                    //deleted since, a later change in the feed says so
+                }
+            }
+            changeDtos.add(new MovieChangeDto(change.getChangeId(), change.getType(), change.getMovieId(),
+                    change.getChangedAt(), movie));
+        }
+
+        Long nextToken = changes.isEmpty() ? since : changes.get(changes.size() - 1).getChangeId();
+        return new MovieChangesResponse(changeDtos, nextToken, hasMore);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public MovieFacetResponse getMoviesWithFacets(MovieFilter filter, Integer pageNumber, Integer pageSize) {
+
+        //a facet ignores its own criterion, so without other criteria it counts the whole catalog,
+        //which the stats index keeps counted in memory
+        boolean yearFiltered = filter.yearFrom() != null || filter.yearTo() != null;
+        MovieStats catalog = movieStatsIndex.stats();
+
+        //without any criteria the page total is the catalog's, also taken from the stats index
+        Pageable pageable = PageRequest.of(pageNumber, pageSize);
+        Page<MovieSummary> moviePages = filter.genre() == null && filter.studio() == null && !yearFiltered
+                ? movieRepository.findSummaries(filter, pageable, catalog.totalMovies())
+                : movieRepository.findSummaries(filter, pageable);
+
+        MoviePageResponse movies = new MoviePageResponse(mapToMovieDtos(moviePages.getContent()), pageNumber, pageSize,
+                (int) moviePages.getTotalElements(), moviePages.getTotalPages(), moviePages.isLast());
+
+        return new MovieFacetResponse(
+                movies,
+                filter.studio() == null && !yearFiltered
+                        ? catalog.genre() : movieRepository.countByFacet("genre", String.class, filter),
+                filter.genre() == null && filter.studio() == null
+                        ? catalog.releaseYear() : movieRepository.countByFacet("releaseYear", Integer.class, filter),
+                filter.genre() == null && !yearFiltered
+                        ? catalog.studio() : movieRepository.countByFacet("studio", String.class, filter)
+        );
+    }
+
+    //the keys of a tampered cursor would only fail inside the keyset query
+    private static Map<String, Object> checkCursorKeys(Map<String, Object> keys, String sortBy) {
+        Set<String> fields = Set.of(sortBy, AppConstants.SORT_BY);
+        if (keys == null || !keys.keySet().equals(fields) || !fields.stream().allMatch(field ->
+                ReflectionUtils.findField(Movie.class, field).getType().isInstance(keys.get(field)))) {
+            throw new InvalidCursorException("Cursor is malformed!");
+        }
+        return keys;
+    }
+
+    //sorts by the field and then movieId, the column order of the index behind each sortable field
+    private static Sort sortOf(MovieSort movieSort) {
+        Sort.Direction direction = Sort.Direction.fromString(movieSort.dir());
+        return movieSort.sortBy().equals(AppConstants.SORT_BY)
+                ? Sort.by(direction, movieSort.sortBy())
+                : Sort.by(direction, movieSort.sortBy(), AppConstants.SORT_BY);
+    }
+
+    private List<MovieDto> mapToMovieDtos(List<MovieSummary> movies) {
+        if (movies.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        //load the cast of all movies with a single query
+        List<Integer> movieIds = movies.stream().map(MovieSummary::movieId).toList();
+        Map<Integer, Set<String>> movieCasts = groupByMovie(movieRepository.findCastByMovieIdIn(movieIds));
+
+        List<MovieDto> movieDtos = new ArrayList<>(movies.size());
+        for (MovieSummary movie : movies) {
+            movieDtos.add(mapToMovieDto(movie, movieCasts.get(movie.movieId())));
+        }
+        return movieDtos;
+    }
+
+    private static Map<Integer, Set<String>> groupByMovie(List<MovieCastMember> castMembers) {
+        Map<Integer, Set<String>> movieCasts = new HashMap<>();
+        for (MovieCastMember castMember : castMembers) {
+            movieCasts.computeIfAbsent(castMember.movieId(), id -> new HashSet<>()).add(castMember.name());
+        }
+        return movieCasts;
+    }
+
+    private MovieDto mapToMovieDto(MovieSummary movie, Set<String> movieCast) {
+        String posterUrl = baseUrl + "/file/" + movie.poster();
+
+        return new MovieDto(
+                movie.movieId(),
+                movie.releaseYear(),
+                movie.title(),
+                movie.genre(),
+                movie.director(),
+                movie.studio(),
+                movie.poster(),
+                posterUrl,
+                movieCast == null ? new HashSet<>() : movieCast
+        );
+    }
 }
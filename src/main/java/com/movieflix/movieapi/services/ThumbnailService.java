@@ -0,0 +1,29 @@
+package com.movieflix.movieapi.services;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+public interface ThumbnailService {
+
+    /**
+     * Queues the creation of every configured width of the poster, to be done in the background.
+     */
+    void createThumbnailsAsync(Path poster);
+
+    /**
+     * Returns the configured width a requested width is served with: the smallest one at least as wide,
+     * or the widest one.
+     */
+    int thumbnailWidth(int requestedWidth);
+
+    /**
+     * Returns the file of the poster scaled down to the given configured width, creating it if it is missing.
+     * Falls back to the poster itself for formats that cannot be scaled.
+     */
+    Path getThumbnail(Path poster, int width) throws IOException;
+
+    /**
+     * Deletes the thumbnails of a poster that has been deleted; one still being created is not kept either.
+     */
+    void deleteThumbnails(Path poster) throws IOException;
+}
@@ -0,0 +1,267 @@
+package com.movieflix.movieapi.services;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Scaled down copies of the posters, stored next to them as {@code <name>-w<width>.<extension>}.
+ * <p>
+ * They are created in the background after an upload, on a pool with a bounded queue; when the queue is full
+ * the work is dropped and a thumbnail is created on its first request instead. Concurrent requests for the same
+ * missing thumbnail wait for one creation. Decoding a large poster takes a lot of memory, so the number of
+ * posters decoded at once is bounded for both ways together, and large posters are decoded subsampled; posters
+ * with more than project.thumbnails.max-pixels pixels are not decoded at all but served unscaled.
+ */
+@Slf4j
+@Service
+public class ThumbnailServiceImpl implements ThumbnailService, DisposableBean {
+
+    private final List<Integer> widths;
+
+    private final ExecutorService executor;
+
+    private final Semaphore decodePermits;
+
+    private final long maxPixels;
+
+    private final Map<Path, CompletableFuture<Path>> inFlight = new ConcurrentHashMap<>();
+
+    public ThumbnailServiceImpl(@Value("${project.thumbnails.widths}") List<Integer> widths,
+                                @Value("${project.thumbnails.threads}") int threads,
+                                @Value("${project.thumbnails.queue-size}") int queueSize,
+                                @Value("${project.thumbnails.max-pixels}") long maxPixels,
+                                MeterRegistry meterRegistry) {
+        this.widths = widths.stream().sorted().distinct().toList();
+        this.decodePermits = new Semaphore(threads);
+        this.maxPixels = maxPixels;
+
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnails-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        this.executor = ExecutorServiceMetrics.monitor(meterRegistry, pool, "posterThumbnails");
+    }
+
+    @Override
+    public void createThumbnailsAsync(Path poster) {
+        try {
+            executor.execute(() -> {
+                for (int width : widths) {
+                    try {
+                        getThumbnail(poster, width);
+                    } catch (IOException | RuntimeException e) {
+                        log.warn("Could not create the {}px thumbnail of {}: {}", width, poster.getFileName(), e.getMessage());
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            //the queue is full, the thumbnails are created when they are first asked for
+            log.debug("Thumbnails of {} not queued", poster.getFileName());
+        }
+    }
+
+    @Override
+    public int thumbnailWidth(int requestedWidth) {
+        for (int width : widths) {
+            if (width >= requestedWidth) {
+                return width;
+            }
+        }
+        return widths.get(widths.size() - 1);
+    }
+
+    @Override
+    public Path getThumbnail(Path poster, int width) throws IOException {
+        Path thumbnail = thumbnailPath(poster, width);
+        if (Files.exists(thumbnail)) {
+            return thumbnail;
+        }
+
+        CompletableFuture<Path> creation = new CompletableFuture<>();
+        CompletableFuture<Path> running = inFlight.putIfAbsent(thumbnail, creation);
+        if (running != null) {
+            return await(running);
+        }
+        try {
+            creation.complete(create(poster, width, thumbnail));
+        } catch (Throwable e) {
+            //waiters must not hang whatever went wrong, e.g. out of memory for a huge poster
+            creation.completeExceptionally(e);
+        } finally {
+            inFlight.remove(thumbnail, creation);
+        }
+        return await(creation);
+    }
+
+    @Override
+    public void deleteThumbnails(Path poster) throws IOException {
+        for (int width : widths) {
+            Files.deleteIfExists(thumbnailPath(poster, width));
+        }
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    private Path create(Path poster, int width, Path thumbnail) throws IOException {
+        String format = format(poster);
+        if (format == null) {
+            return poster;
+        }
+
+        decodePermits.acquireUninterruptibly();
+        try (ImageInputStream input = ImageIO.createImageInputStream(poster.toFile())) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                //no reader for the content, whatever the extension says
+                return poster;
+            }
+            ImageReader reader = readers.next();
+            try {
+                //the size is in the header, nothing is decoded yet
+                reader.setInput(input, true, true);
+                int posterWidth = reader.getWidth(0);
+                int posterHeight = reader.getHeight(0);
+                if ((long) posterWidth * posterHeight > maxPixels) {
+                    //a small file can hold an image that takes gigabytes once decoded
+                    log.warn("{} has {}x{} pixels, it is served unscaled", poster.getFileName(), posterWidth, posterHeight);
+                    return poster;
+                }
+
+                //written to a temporary file first, so a thumbnail that exists is always complete
+                Path temporary = Files.createTempFile(poster.getParent(), "thumbnail-", ".tmp");
+                try {
+                    if (posterWidth <= width) {
+                        //never scaled up, the poster itself is small enough
+                        Files.copy(poster, temporary, StandardCopyOption.REPLACE_EXISTING);
+                    } else if (!ImageIO.write(scale(decode(reader, posterWidth, width), width, "jpeg".equals(format)),
+                            format, temporary.toFile())) {
+                        return poster;
+                    }
+                    Files.move(temporary, thumbnail, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+                    //deleted while it was scaled, the poster goes before its thumbnails, so they may be gone already
+                    if (!Files.exists(poster)) {
+                        Files.deleteIfExists(thumbnail);
+                        throw new NoSuchFileException(poster.toString());
+                    }
+                } finally {
+                    Files.deleteIfExists(temporary);
+                }
+                return thumbnail;
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            decodePermits.release();
+        }
+    }
+
+    // only every n-th pixel of a large poster is decoded, still at least twice the width for the scaling steps
+    private static BufferedImage decode(ImageReader reader, int posterWidth, int width) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        int subsampling = Math.max(1, posterWidth / (2 * width));
+        param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+        return reader.read(0, param);
+    }
+
+    // halves the size in steps before the last one, a single bilinear step from a large poster looks grainy
+    private static BufferedImage scale(BufferedImage image, int width, boolean opaque) {
+        int type = opaque ? BufferedImage.TYPE_INT_RGB : BufferedImage.TYPE_INT_ARGB;
+        int height = Math.max(1, (int) Math.round((double) image.getHeight() * width / image.getWidth()));
+
+        BufferedImage scaled = image;
+        int currentWidth = image.getWidth();
+        int currentHeight = image.getHeight();
+        do {
+            currentWidth = Math.max(width, currentWidth / 2);
+            currentHeight = Math.max(height, currentHeight / 2);
+
+            BufferedImage step = new BufferedImage(currentWidth, currentHeight, type);
+            Graphics2D graphics = step.createGraphics();
+            try {
+                graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+                graphics.drawImage(scaled, 0, 0, currentWidth, currentHeight, null);
+            } finally {
+                graphics.dispose();
+            }
+            scaled = step;
+        } while (currentWidth > width);
+        return scaled;
+    }
+
+    private static Path thumbnailPath(Path poster, int width) {
+        String fileName = poster.getFileName().toString();
+        int dot = fileName.lastIndexOf('.');
+        String name = dot < 0 ? fileName : fileName.substring(0, dot);
+        String extension = dot < 0 ? "" : fileName.substring(dot);
+        return poster.resolveSibling(name + "-w" + width + extension);
+    }
+
+    // the ImageIO writer for the extension of the poster, null for formats that are served unscaled
+    private static String format(Path poster) {
+        String fileName = poster.getFileName().toString().toLowerCase();
+        if (fileName.endsWith(".jpg") || fileName.endsWith(".jpeg")) {
+            return "jpeg";
+        }
+        if (fileName.endsWith(".png")) {
+            return "png";
+        }
+        if (fileName.endsWith(".gif")) {
+            return "gif";
+        }
+        return null;
+    }
+
+    private static Path await(CompletableFuture<Path> creation) throws IOException {
+        try {
+            return creation.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -9,4 +9,20 @@ public class AppConstants {
     public static final String SORT_BY = "movieId";
 
     public static final String SORT_DIR = "asc";
+
+    public static final String SEARCH_LIMIT = "20";
+
+    public static final int MAX_SEARCH_LIMIT = 100;
+
+    public static final String SUGGEST_LIMIT = "10";
+
+    public static final int MAX_SUGGEST_LIMIT = 50;
+
+    public static final String SIMILAR_LIMIT = "10";
+
+    public static final String CHANGES_SINCE = "0";
+
+    public static final String CHANGES_LIMIT = "100";
+
+    public static final int MAX_CHANGES_LIMIT = 1000;
 }
@@ -0,0 +1,88 @@
+package com.movieflix.movieapi.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Minimal CSV support for the bulk import and export: comma separated fields, optionally quoted with '"',
+ * a quote inside a quoted field written as '""'. A quoted field may span lines.
+ */
+public class CsvUtils {
+
+    // separates the members of a list within one field, e.g. the cast of a movie
+    public static final String LIST_SEPARATOR = "|";
+
+    private CsvUtils() {
+    }
+
+    /**
+     * Reads the next record, continuing over line breaks inside a quoted field, or returns null at the end of
+     * the input. Line breaks inside a field are read as '\n'.
+     */
+    public static String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null) {
+            return null;
+        }
+
+        StringBuilder record = new StringBuilder(line);
+        boolean quoted = isQuoteOpen(line, false);
+        while (quoted && (line = reader.readLine()) != null) {
+            record.append('\n').append(line);
+            quoted = isQuoteOpen(line, true);
+        }
+        return record.toString();
+    }
+
+    public static List<String> parseLine(String line) {
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    value.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    value.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else {
+                value.append(c);
+            }
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    // an escaped quote counts twice, so only the parity of the quotes matters
+    private static boolean isQuoteOpen(String line, boolean quoted) {
+        for (int i = 0; i < line.length(); i++) {
+            if (line.charAt(i) == '"') {
+                quoted = !quoted;
+            }
+        }
+        return quoted;
+    }
+
+    public static String escape(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+}
@@ -0,0 +1,137 @@
+package com.movieflix.movieapi.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRange;
+import org.springframework.http.MediaType;
+import org.springframework.http.MediaTypeFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Writes a file to the response with its content type and length, or the one byte range asked for with a
+ * Range header as a 206. Requests for several ranges get the whole file, which HTTP allows.
+ * <p>
+ * On Tomcat the file is handed to the connector, which sends it with sendfile once the request is done and
+ * the worker thread is free; the bytes never pass through the JVM heap. Elsewhere it is copied with
+ * {@link FileChannel#transferTo}. Either way the file is closed when the response is done.
+ */
+public class FileTransfer {
+
+    // request attributes of Tomcat's sendfile support, as used by its DefaultServlet
+    private static final String SENDFILE_SUPPORTED = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileTransfer() {
+    }
+
+    public static void send(Path file, HttpServletRequest request, HttpServletResponse response) throws IOException {
+        ByteRange range = prepare(file.getFileName().toString(), Files.size(file), request, response);
+        if (range == null) {
+            return;
+        }
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORTED))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toRealPath().toString());
+            request.setAttribute(SENDFILE_START, range.start());
+            request.setAttribute(SENDFILE_END, range.end() + 1);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+            long position = range.start();
+            while (position <= range.end()) {
+                long transferred = channel.transferTo(position, range.end() + 1 - position, out);
+                if (transferred <= 0) {
+                    //the file got shorter, the client sees fewer bytes than Content-Length
+                    break;
+                }
+                position += transferred;
+            }
+        }
+    }
+
+    /**
+     * Writes content held in memory, e.g. a cached poster, the same way. The buffer itself is not modified.
+     */
+    public static void send(ByteBuffer content, String fileName, HttpServletRequest request,
+                            HttpServletResponse response) throws IOException {
+        ByteRange range = prepare(fileName, content.remaining(), request, response);
+        if (range == null) {
+            return;
+        }
+
+        //the servlet API only takes byte arrays, the bytes pass through a small chunk instead of a copy of the whole
+        ByteBuffer slice = content.slice(content.position() + (int) range.start(), (int) range.count());
+        WritableByteChannel out = Channels.newChannel(response.getOutputStream());
+        while (slice.hasRemaining()) {
+            out.write(slice);
+        }
+    }
+
+    // sets status and headers, returns the bytes to send or null if there is no body
+    private static ByteRange prepare(String fileName, long length, HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        long start = 0;
+        long end = length - 1;
+
+        response.setContentType(MediaTypeFactory.getMediaType(fileName)
+                .orElse(MediaType.APPLICATION_OCTET_STREAM).toString());
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        HttpRange range = singleRange(request.getHeader(HttpHeaders.RANGE));
+        if (range != null) {
+            start = range.getRangeStart(length);
+            end = range.getRangeEnd(length);
+            if (start >= length) {
+                //starts past the end of the file, or the file is empty
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return null;
+            }
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+        }
+
+        ByteRange byteRange = new ByteRange(start, end);
+        response.setContentLengthLong(byteRange.count());
+        if (byteRange.count() == 0 || HttpMethod.HEAD.matches(request.getMethod())) {
+            return null;
+        }
+        return byteRange;
+    }
+
+    private static HttpRange singleRange(String header) {
+        if (header == null) {
+            return null;
+        }
+        try {
+            List<HttpRange> ranges = HttpRange.parseRanges(header);
+            return ranges.size() == 1 ? ranges.get(0) : null;
+        } catch (IllegalArgumentException e) {
+            //a Range header that cannot be parsed is ignored
+            return null;
+        }
+    }
+
+    // inclusive, as in Content-Range
+    private record ByteRange(long start, long end) {
+
+        long count() {
+            return end - start + 1;
+        }
+    }
+}
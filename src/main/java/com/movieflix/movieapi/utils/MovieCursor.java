@@ -0,0 +1,33 @@
+package com.movieflix.movieapi.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movieflix.movieapi.exceptions.InvalidCursorException;
+
+import java.io.IOException;
+import java.util.Base64;
+import java.util.Map;
+
+/**
+ * Position of a keyset page: the sort key and movieId of the last row returned.
+ * Clients only ever see it as an opaque url-safe string.
+ */
+public record MovieCursor(String sortBy, String dir, Map<String, Object> keys) {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    public String encode() {
+        try {
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(OBJECT_MAPPER.writeValueAsBytes(this));
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not encode cursor", e);
+        }
+    }
+
+    public static MovieCursor decode(String cursor) {
+        try {
+            return OBJECT_MAPPER.readValue(Base64.getUrlDecoder().decode(cursor), MovieCursor.class);
+        } catch (IllegalArgumentException | IOException e) {
+            throw new InvalidCursorException("Cursor is malformed!");
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.movieflix.movieapi.utils;
+
+import com.movieflix.movieapi.entities.Movie;
+import com.movieflix.movieapi.exceptions.InvalidSortFieldException;
+
+/**
+ * A checked sort order: the field is one of the sortable ones and the direction is "asc" or "desc", anything
+ * other than "asc" sorting descending. Checked before anything is keyed or cached by it.
+ */
+public record MovieSort(String sortBy, String dir) {
+
+    public static MovieSort of(String sortBy, String dir) {
+        if (!Movie.SORTABLE_FIELDS.contains(sortBy)) {
+            throw new InvalidSortFieldException("Movies cannot be sorted by " + sortBy + "! Sortable fields are " + Movie.SORTABLE_FIELDS + ".");
+        }
+        return new MovieSort(sortBy, "asc".equalsIgnoreCase(dir) ? "asc" : "desc");
+    }
+}
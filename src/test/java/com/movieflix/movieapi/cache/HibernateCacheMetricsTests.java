@@ -0,0 +1,99 @@
+package com.movieflix.movieapi.cache;
+
+import com.movieflix.movieapi.auth.entities.User;
+import com.movieflix.movieapi.auth.entities.UserRole;
+import com.movieflix.movieapi.auth.repositories.UserRepository;
+import com.movieflix.movieapi.entities.Movie;
+import com.movieflix.movieapi.repositories.MovieRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the second-level cache is only filled and read outside of a writing transaction
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class HibernateCacheMetricsTests {
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private UserRepository userRepository;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	private MeterRegistry meterRegistry;
+
+	// meters only hold a weak reference to the binder
+	private HibernateCacheMetrics hibernateCacheMetrics;
+
+	private Statistics statistics;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		hibernateCacheMetrics = new HibernateCacheMetrics(entityManagerFactory);
+		hibernateCacheMetrics.bindTo(meterRegistry);
+		statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+	}
+
+	@AfterEach
+	void tearDown() {
+		userRepository.deleteAll();
+		movieRepository.deleteAll();
+	}
+
+	@Test
+	void userLookupByUsernameIsServedFromTheCache() {
+		userRepository.save(User.builder().name("Name").username("user").email("user@example.com")
+				.password("secret").role(UserRole.USER).build());
+
+		userRepository.findByUsername("user").orElseThrow();
+		statistics.clear();
+		assertThat(userRepository.findByUsername("user")).isPresent();
+
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(hits(UserRepository.USERNAME_CACHE_REGION)).isEqualTo(1);
+		assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", UserRepository.USERNAME_CACHE_REGION).gauge().value())
+				.isEqualTo(1);
+	}
+
+	@Test
+	void movieAndCastAreLoadedFromTheCache() {
+		Integer movieId = movieRepository.save(new Movie(null, 2001, "Title", "Drama", "Director", "Studio",
+				"poster.png", Set.of("Actor"))).getMovieId();
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+
+		transaction.executeWithoutResult(status -> movieRepository.findById(movieId).orElseThrow().getMovieCast().size());
+		statistics.clear();
+		Set<String> movieCast = transaction.execute(status -> Set.copyOf(movieRepository.findById(movieId).orElseThrow().getMovieCast()));
+
+		assertThat(movieCast).containsExactly("Actor");
+		assertThat(statistics.getPrepareStatementCount()).isZero();
+		assertThat(hits("movie")).isEqualTo(1);
+		assertThat(hits("movieCast")).isEqualTo(1);
+	}
+
+	private double hits(String region) {
+		return meterRegistry.get("cache.gets").tag("cache", region).tag("result", "hit").functionCounter().count();
+	}
+}
@@ -0,0 +1,49 @@
+package com.movieflix.movieapi.cache;
+
+import com.movieflix.movieapi.dto.CatalogVersion;
+import com.movieflix.movieapi.events.MovieChangeType;
+import com.movieflix.movieapi.events.MovieChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieCacheTests {
+
+	private MovieCache movieCache;
+
+	@BeforeEach
+	void setUp() {
+		movieCache = new MovieCache(100, Duration.ofMinutes(10), DataSize.ofMegabytes(1), new SimpleMeterRegistry());
+	}
+
+	@Test
+	void dropsAVersionLoadedWhileAWriteCommitted() {
+		CatalogVersion before = new CatalogVersion(1, Instant.EPOCH);
+		CatalogVersion after = new CatalogVersion(2, Instant.EPOCH);
+
+		CatalogVersion loaded = movieCache.getCatalogVersion(() -> {
+			//the write commits on another thread while the old version is being read
+			CompletableFuture.runAsync(() -> movieCache.onMovieChanged(
+					new MovieChangedEvent(MovieChangeType.CREATED, 2, null))).join();
+			return before;
+		});
+
+		assertThat(loaded).isEqualTo(before);
+		assertThat(movieCache.getCatalogVersion(() -> after)).isEqualTo(after);
+	}
+
+	@Test
+	void keepsAVersionLoadedWithoutWrites() {
+		CatalogVersion version = new CatalogVersion(1, Instant.EPOCH);
+		movieCache.getCatalogVersion(() -> version);
+
+		assertThat(movieCache.getCatalogVersion(() -> new CatalogVersion(2, Instant.EPOCH))).isEqualTo(version);
+	}
+}
@@ -0,0 +1,128 @@
+package com.movieflix.movieapi.cache;
+
+import com.movieflix.movieapi.cache.PosterCache.CachedPoster;
+import com.movieflix.movieapi.exceptions.PosterNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class PosterCacheTests {
+
+	@TempDir
+	private Path posterDir;
+
+	private MeterRegistry meterRegistry;
+
+	private PosterCache posterCache;
+
+	private final AtomicInteger resolved = new AtomicInteger();
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		posterCache = new PosterCache(DataSize.ofMegabytes(1), DataSize.ofBytes(16), Duration.ofMinutes(10),
+				meterRegistry);
+	}
+
+	@Test
+	void keepsSmallPostersOffTheHeapAndServesHitsWithoutTheDisk() throws Exception {
+		Path file = Files.writeString(posterDir.resolve("small.png"), "poster");
+
+		CachedPoster first = posterCache.getPoster("small.png", null, () -> resolve(file));
+		Files.delete(file);
+		CachedPoster second = posterCache.getPoster("small.png", null, () -> resolve(file));
+
+		assertThat(resolved).hasValue(1);
+		assertThat(second).isSameAs(first);
+		assertThat(second.content().isDirect()).isTrue();
+		assertThat(second.content().isReadOnly()).isTrue();
+		assertThat(text(second.content())).isEqualTo("poster");
+	}
+
+	@Test
+	void remembersOnlyTheLocationOfLargePosters() throws Exception {
+		Path file = Files.writeString(posterDir.resolve("large.png"), "a poster larger than sixteen bytes");
+
+		CachedPoster poster = posterCache.getPoster("large.png", null, () -> resolve(file));
+
+		assertThat(poster.file()).isEqualTo(file);
+		assertThat(poster.content()).isNull();
+	}
+
+	@Test
+	void resolvesALargePosterAgainOnceItsFileIsGone() throws Exception {
+		Path file = Files.writeString(posterDir.resolve("large.png"), "a poster larger than sixteen bytes");
+		Path moved = posterDir.resolve("moved.png");
+		posterCache.getPoster("large.png", null, () -> resolve(file));
+
+		Files.move(file, moved);
+		CachedPoster poster = posterCache.getPoster("large.png", null, () -> resolve(moved));
+
+		assertThat(poster.file()).isEqualTo(moved);
+		assertThat(resolved).hasValue(2);
+	}
+
+	@Test
+	void largePosterWhoseFileIsGoneIsNotFound() throws Exception {
+		Path file = Files.writeString(posterDir.resolve("large.png"), "a poster larger than sixteen bytes");
+		posterCache.getPoster("large.png", null, () -> resolve(file));
+
+		Files.delete(file);
+
+		assertThatThrownBy(() -> posterCache.getPoster("large.png", null, () -> resolve(file)))
+				.isInstanceOf(PosterNotFoundException.class);
+	}
+
+	@Test
+	void evictsAPosterWithItsThumbnails() throws Exception {
+		Path file = Files.writeString(posterDir.resolve("small.png"), "poster");
+		posterCache.getPoster("small.png", null, () -> resolve(file));
+		posterCache.getPoster("small.png", 160, () -> resolve(file));
+		posterCache.getPoster("other.png", null, () -> resolve(file));
+
+		posterCache.evict("small.png");
+		posterCache.getPoster("small.png", null, () -> resolve(file));
+		posterCache.getPoster("small.png", 160, () -> resolve(file));
+		posterCache.getPoster("other.png", null, () -> resolve(file));
+
+		assertThat(resolved).hasValue(5);
+	}
+
+	@Test
+	void reportsHitRatioAndResidentBytes() throws Exception {
+		Path file = Files.writeString(posterDir.resolve("small.png"), "poster");
+		posterCache.getPoster("small.png", null, () -> resolve(file));
+		posterCache.getPoster("small.png", null, () -> resolve(file));
+		posterCache.getPoster("small.png", null, () -> resolve(file));
+		posterCache.getPoster("small.png", null, () -> resolve(file));
+		posterCache.cleanUp();
+
+		assertThat(meterRegistry.get("cache.hit.ratio").tag("cache", "posters").gauge().value()).isEqualTo(0.75);
+		assertThat(meterRegistry.get("cache.weighted.size").tag("cache", "posters").gauge().value())
+				.isGreaterThanOrEqualTo("poster".length());
+	}
+
+	private Path resolve(Path file) {
+		resolved.incrementAndGet();
+		return file;
+	}
+
+	private static String text(ByteBuffer content) {
+		byte[] bytes = new byte[content.remaining()];
+		content.duplicate().get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+}
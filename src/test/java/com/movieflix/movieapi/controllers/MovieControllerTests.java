@@ -0,0 +1,59 @@
+package com.movieflix.movieapi.controllers;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movieflix.movieapi.dto.CatalogVersion;
+import com.movieflix.movieapi.exceptions.InvalidSortFieldException;
+import com.movieflix.movieapi.services.MovieImportService;
+import com.movieflix.movieapi.services.MovieService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.ServletWebRequest;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class MovieControllerTests {
+
+	private final MovieService movieService = mock(MovieService.class);
+
+	private final MovieController movieController =
+			new MovieController(movieService, mock(MovieImportService.class), new ObjectMapper());
+
+	@BeforeEach
+	void setUp() {
+		when(movieService.getCatalogVersion()).thenReturn(new CatalogVersion(3L, Instant.EPOCH));
+	}
+
+	@Test
+	void sortedPagesCheckTheSortBeforeTheirETag() {
+		assertThatThrownBy(() -> movieController.getMoviesWithPaginationAndSorting(0, 3, "poster", "asc", request()))
+				.isInstanceOf(InvalidSortFieldException.class);
+
+		verify(movieService, never()).getCatalogVersion();
+	}
+
+	@Test
+	void unknownDirectionsShareTheETagOfDescendingPages() {
+		assertThat(eTag("title", "sideways")).isEqualTo(eTag("title", "DESC"))
+				.isNotEqualTo(eTag("title", "asc"));
+	}
+
+	private String eTag(String sortBy, String dir) {
+		ServletWebRequest request = request();
+		movieController.getMoviesWithPaginationAndSorting(0, 3, sortBy, dir, request);
+		return request.getResponse().getHeader("ETag");
+	}
+
+	private static ServletWebRequest request() {
+		return new ServletWebRequest(new MockHttpServletRequest("GET", "/api/v1/movie/allMoviesPageSort"),
+				new MockHttpServletResponse());
+	}
+}
@@ -0,0 +1,48 @@
+package com.movieflix.movieapi.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.mock.env.MockEnvironment;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DataSourceConfigTests {
+
+	private final List<HikariDataSource> pools = new ArrayList<>();
+
+	@AfterEach
+	void tearDown() {
+		pools.forEach(HikariDataSource::close);
+	}
+
+	@Test
+	void everyPoolTakesTheHikariSettings() {
+		DataSourceProperties properties = new DataSourceProperties();
+		properties.setUrl("jdbc:h2:mem:primary");
+		MockEnvironment environment = new MockEnvironment()
+				.withProperty("spring.datasource.hikari.maximum-pool-size", "3")
+				.withProperty("spring.datasource.hikari.connection-timeout", "1500")
+				.withProperty("spring.datasource.hikari.pool-name", "ignored");
+
+		DataSource dataSource = new DataSourceConfig().dataSource(properties, environment,
+				List.of("jdbc:h2:mem:replica"), Duration.ofSeconds(5));
+
+		ReadWriteRoutingDataSource routing = (ReadWriteRoutingDataSource)
+				((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+		routing.getResolvedDataSources().values().forEach(pool -> pools.add((HikariDataSource) pool));
+		assertThat(pools).extracting(HikariDataSource::getPoolName).containsExactlyInAnyOrder("primary", "replica-0");
+		assertThat(pools).allSatisfy(pool -> {
+			assertThat(pool.getMaximumPoolSize()).isEqualTo(3);
+			assertThat(pool.getConnectionTimeout()).isEqualTo(1500);
+		});
+		assertThat(pools).extracting(HikariDataSource::getJdbcUrl).containsExactlyInAnyOrder("jdbc:h2:mem:primary", "jdbc:h2:mem:replica");
+	}
+}
@@ -0,0 +1,106 @@
+package com.movieflix.movieapi.datasource;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabase;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseBuilder;
+import org.springframework.jdbc.datasource.embedded.EmbeddedDatabaseType;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReadWriteRoutingDataSourceTests {
+
+	private static final Duration WINDOW = Duration.ofSeconds(5);
+
+	private EmbeddedDatabase primary;
+
+	private EmbeddedDatabase replica;
+
+	private Instant now = Instant.parse("2024-01-01T00:00:00Z");
+
+	private JdbcTemplate jdbcTemplate;
+
+	private TransactionTemplate readWrite;
+
+	private TransactionTemplate readOnly;
+
+	@BeforeEach
+	void setUp() {
+		primary = database("primary");
+		replica = database("replica");
+
+		Clock clock = new Clock() {
+			@Override
+			public Instant instant() {
+				return now;
+			}
+
+			@Override
+			public ZoneId getZone() {
+				return ZoneOffset.UTC;
+			}
+
+			@Override
+			public Clock withZone(ZoneId zone) {
+				return this;
+			}
+		};
+		LazyConnectionDataSourceProxy dataSource = new LazyConnectionDataSourceProxy(
+				new ReadWriteRoutingDataSource(primary, List.of(replica), WINDOW, clock));
+
+		jdbcTemplate = new JdbcTemplate(dataSource);
+		DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+		readWrite = new TransactionTemplate(transactionManager);
+		readOnly = new TransactionTemplate(transactionManager);
+		readOnly.setReadOnly(true);
+	}
+
+	@AfterEach
+	void tearDown() {
+		primary.shutdown();
+		replica.shutdown();
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplica() {
+		assertThat(databaseName(readOnly)).isEqualTo("replica");
+		assertThat(databaseName(readWrite)).isEqualTo("primary");
+	}
+
+	@Test
+	void readsStayOnThePrimaryRightAfterAWrite() {
+		readWrite.executeWithoutResult(status -> jdbcTemplate.update("update marker set name = 'written'"));
+
+		now = now.plus(WINDOW).minusMillis(1);
+		assertThat(databaseName(readOnly)).isEqualTo("written");
+
+		now = now.plusMillis(1);
+		assertThat(databaseName(readOnly)).isEqualTo("replica");
+	}
+
+	private String databaseName(TransactionTemplate transaction) {
+		return transaction.execute(status -> jdbcTemplate.queryForObject("select name from marker", String.class));
+	}
+
+	private static EmbeddedDatabase database(String name) {
+		EmbeddedDatabase database = new EmbeddedDatabaseBuilder()
+				.setType(EmbeddedDatabaseType.H2)
+				.setName(name)
+				.build();
+		new JdbcTemplate(database).execute("create table marker (name varchar(20))");
+		new JdbcTemplate(database).update("insert into marker values (?)", name);
+		return database;
+	}
+}
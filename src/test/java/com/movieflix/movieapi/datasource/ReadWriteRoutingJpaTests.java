@@ -0,0 +1,146 @@
+package com.movieflix.movieapi.datasource;
+
+import com.movieflix.movieapi.cache.MovieCache;
+import com.movieflix.movieapi.cache.MovieCount;
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.exceptions.MovieNotFoundException;
+import com.movieflix.movieapi.search.MovieSearchIndex;
+import com.movieflix.movieapi.search.MovieSimilarityIndex;
+import com.movieflix.movieapi.search.MovieStatsIndex;
+import com.movieflix.movieapi.search.MovieSuggestIndex;
+import com.movieflix.movieapi.services.FileService;
+import com.movieflix.movieapi.services.MovieService;
+import com.movieflix.movieapi.services.MovieServiceImpl;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.when;
+
+/**
+ * Routes the movie service's own transactions, through the JPA transaction manager and the datasource of
+ * {@link DataSourceConfig}, over a primary and a replica that only ever holds what is inserted into it here.
+ */
+@DataJpaTest(properties = {"spring.datasource.url=jdbc:h2:mem:routing-primary",
+		"project.datasource.replica-urls=jdbc:h2:mem:routing-replica",
+		"project.datasource.read-your-writes-window=PT2S"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({DataSourceConfig.class, MovieServiceImpl.class, MovieCache.class, MovieCount.class, MovieSearchIndex.class,
+		MovieSuggestIndex.class, MovieSimilarityIndex.class, MovieStatsIndex.class, ReadWriteRoutingJpaTests.MetricsConfig.class})
+//each call opens its own transactions, a test transaction around them would send everything to the primary
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ReadWriteRoutingJpaTests {
+
+	private static final Duration WINDOW = Duration.ofSeconds(2);
+
+	//one per test, the movie cache outlives a test
+	private static final AtomicInteger REPLICA_MOVIE_IDS = new AtomicInteger(1000);
+
+	@Autowired
+	private MovieService movieService;
+
+	@Autowired
+	private DataSource dataSource;
+
+	@Autowired
+	private EntityManagerFactory entityManagerFactory;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private FileService fileService;
+
+	private JdbcTemplate replica;
+
+	private int replicaMovieId;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		ReadWriteRoutingDataSource routing = (ReadWriteRoutingDataSource)
+				((LazyConnectionDataSourceProxy) dataSource).getTargetDataSource();
+		JdbcTemplate primary = new JdbcTemplate(routing.getResolvedDataSources().get("primary"));
+		replica = new JdbcTemplate(routing.getResolvedDataSources().get("replica-0"));
+
+		//the replica gets the schema Hibernate created on the primary, but none of the rows
+		if (replica.queryForObject("select count(*) from information_schema.tables where table_name = 'MOVIE'", Integer.class) == 0) {
+			primary.queryForList("script nodata", String.class).stream()
+					.filter(statement -> !statement.startsWith("CREATE USER"))
+					.forEach(replica::execute);
+		}
+		replica.update("delete from movie_cast");
+		replica.update("delete from movie");
+		replicaMovieId = REPLICA_MOVIE_IDS.incrementAndGet();
+		replica.update("insert into movie (movie_id, release_year, title, genre, director, studio, poster, version) "
+				+ "values (?, 2001, 'On the replica', 'Drama', 'Director', 'Studio', 'poster.png', 0)", replicaMovieId);
+
+		when(fileService.uploadFile(anyString(), any())).thenReturn("poster.png");
+	}
+
+	@Test
+	void runsOnTheJpaTransactionManager() {
+		assertThat(transactionManager).isInstanceOf(JpaTransactionManager.class);
+	}
+
+	@Test
+	void readsRightAfterAWriteGoToThePrimary() throws Exception {
+		MovieDto added = movieService.addMovie(movie("Just added"), null);
+		//the entity would be read from the second-level cache without any connection at all
+		entityManagerFactory.getCache().evictAll();
+
+		assertThat(movieService.getMovie(added.getMovieId()).getTitle()).isEqualTo("Just added");
+		assertThatThrownBy(() -> movieService.getMovie(replicaMovieId)).isInstanceOf(MovieNotFoundException.class);
+	}
+
+	@Test
+	void readOnlyTransactionsGoToTheReplicaOnceTheWindowHasPassed() throws Exception {
+		MovieDto added = movieService.addMovie(movie("Not replicated"), null);
+		entityManagerFactory.getCache().evictAll();
+
+		Thread.sleep(WINDOW.plusMillis(100).toMillis());
+
+		//the read-only flag is set on the lazy connection, the replica is only picked at the first statement
+		assertThat(movieService.getMovie(replicaMovieId).getTitle()).isEqualTo("On the replica");
+		assertThatThrownBy(() -> movieService.getMovie(added.getMovieId())).isInstanceOf(MovieNotFoundException.class);
+	}
+
+	private static MovieDto movie(String title) {
+		return new MovieDto(null, 2001, title, "Drama", "Director", "Studio", null, null, Set.of("Actor"));
+	}
+
+	@TestConfiguration
+	static class MetricsConfig {
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+}
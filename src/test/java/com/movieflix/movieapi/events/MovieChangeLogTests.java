@@ -0,0 +1,91 @@
+package com.movieflix.movieapi.events;
+
+import com.movieflix.movieapi.entities.MovieChange;
+import com.movieflix.movieapi.entities.MovieChangeSequence;
+import com.movieflix.movieapi.repositories.MovieChangeRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// changes are written when the transaction commits, so every test commits its own
+@DataJpaTest
+@Import(MovieChangeLog.class)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MovieChangeLogTests {
+
+	@Autowired
+	private MovieChangeRepository movieChangeRepository;
+
+	@Autowired
+	private ApplicationEventPublisher eventPublisher;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@AfterEach
+	void tearDown() {
+		movieChangeRepository.deleteAll();
+	}
+
+	@Test
+	void committedChangesAreReadInOrderAfterTheToken() {
+		Long since = lastChangeId();
+
+		TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+		transaction.executeWithoutResult(status -> {
+			publish(MovieChangeType.CREATED, 1);
+			publish(MovieChangeType.UPDATED, 1);
+		});
+		transaction.executeWithoutResult(status -> publish(MovieChangeType.DELETED, 1));
+
+		List<MovieChange> changes = changesAfter(since);
+		assertThat(changes).extracting(MovieChange::getType)
+				.containsExactly(MovieChangeType.CREATED, MovieChangeType.UPDATED, MovieChangeType.DELETED);
+		assertThat(changes).extracting(MovieChange::getChangeId)
+				.containsExactly(since + 1, since + 2, since + 3);
+
+		assertThat(changesAfter(since + 3)).isEmpty();
+	}
+
+	@Test
+	void rolledBackChangesAreNotRecorded() {
+		Long since = lastChangeId();
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			publish(MovieChangeType.CREATED, 2);
+			status.setRollbackOnly();
+		});
+		//no transaction to record it in
+		publish(MovieChangeType.UPDATED, 2);
+
+		assertThat(changesAfter(since)).isEmpty();
+	}
+
+	private void publish(MovieChangeType type, Integer movieId) {
+		eventPublisher.publishEvent(new MovieChangedEvent(type, movieId, null));
+	}
+
+	private List<MovieChange> changesAfter(Long since) {
+		return movieChangeRepository.findByChangeIdGreaterThanOrderByChangeId(since, Limit.of(10));
+	}
+
+	private Long lastChangeId() {
+		return entityManager.find(MovieChangeSequence.class, MovieChangeSequence.ID).getLastChangeId();
+	}
+}
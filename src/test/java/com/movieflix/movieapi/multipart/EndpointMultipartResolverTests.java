@@ -0,0 +1,56 @@
+package com.movieflix.movieapi.multipart;
+
+import jakarta.servlet.DispatcherType;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockPart;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.util.WebUtils;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EndpointMultipartResolverTests {
+
+	private final EndpointMultipartResolver resolver = new EndpointMultipartResolver(Set.of("/import"), 10, 16);
+
+	@Test
+	void rejectsARequestLargerThanTheLimitBeforeReadingIt() {
+		MockHttpServletRequest request = request("/upload", 20);
+
+		assertThatThrownBy(() -> resolver.resolveMultipart(request)).isInstanceOf(MaxUploadSizeExceededException.class);
+	}
+
+	@Test
+	void checksTheFilesOfARequestWithoutContentLength() {
+		MockHttpServletRequest request = request("/upload", 12);
+		request.setContent(null);
+
+		assertThatThrownBy(() -> resolver.resolveMultipart(request)).isInstanceOf(MaxUploadSizeExceededException.class);
+	}
+
+	@Test
+	void leavesExemptPathsToTheContainer() {
+		assertThat(resolver.resolveMultipart(request("/import", 20)).getFile("file").getSize()).isEqualTo(20);
+	}
+
+	@Test
+	void judgesAnErrorDispatchByTheFailedRequest() {
+		MockHttpServletRequest request = request("/error", 20);
+		request.setDispatcherType(DispatcherType.ERROR);
+		request.setAttribute(WebUtils.ERROR_REQUEST_URI_ATTRIBUTE, "/import");
+
+		assertThat(resolver.resolveMultipart(request).getFile("file").getSize()).isEqualTo(20);
+	}
+
+	private static MockHttpServletRequest request(String uri, int fileSize) {
+		MockHttpServletRequest request = new MockHttpServletRequest("POST", uri);
+		request.setContentType("multipart/form-data; boundary=boundary");
+		request.setContent(new byte[fileSize]);
+		MockPart part = new MockPart("file", "poster.png", new byte[fileSize]);
+		request.addPart(part);
+		return request;
+	}
+}
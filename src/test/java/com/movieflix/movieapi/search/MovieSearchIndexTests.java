@@ -0,0 +1,57 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieSearchIndexTests {
+
+	private MovieSearchIndex movieSearchIndex;
+
+	@BeforeEach
+	void setUp() {
+		movieSearchIndex = new MovieSearchIndex();
+		movieSearchIndex.index(movie(1, "Le Fabuleux Destin d'Amélie Poulain", "Jean-Pierre Jeunet", Set.of("Audrey Tautou")));
+		movieSearchIndex.index(movie(2, "Delicatessen", "Jean-Pierre Jeunet", Set.of("Dominique Pinon")));
+		movieSearchIndex.index(movie(3, "Amelie Returns", "Someone Else", Set.of("Jean Reno")));
+	}
+
+	@Test
+	void foldsCaseAndDiacritics() {
+		assertThat(movieSearchIndex.search("AMÉLIE", 10)).containsExactlyInAnyOrder(1, 3);
+		assertThat(movieSearchIndex.search("amelie poulain", 10)).containsExactly(1);
+	}
+
+	@Test
+	void ranksTitleMatchesAboveCastMatches() {
+		movieSearchIndex.index(movie(4, "Reno", "Nobody", Set.of()));
+
+		assertThat(movieSearchIndex.search("reno", 10)).containsExactly(4, 3);
+	}
+
+	@Test
+	void requiresEveryWordAndHonoursLimit() {
+		assertThat(movieSearchIndex.search("jeunet", 10)).containsExactly(1, 2);
+		assertThat(movieSearchIndex.search("jeunet", 1)).containsExactly(1);
+		assertThat(movieSearchIndex.search("jeunet pinon", 10)).containsExactly(2);
+		assertThat(movieSearchIndex.search("jeunet unknown", 10)).isEmpty();
+	}
+
+	@Test
+	void reindexAndRemoveReplacePreviousTokens() {
+		movieSearchIndex.index(movie(2, "Alien Resurrection", "Jean-Pierre Jeunet", Set.of("Sigourney Weaver")));
+		movieSearchIndex.remove(1);
+
+		assertThat(movieSearchIndex.search("delicatessen", 10)).isEmpty();
+		assertThat(movieSearchIndex.search("alien", 10)).containsExactly(2);
+		assertThat(movieSearchIndex.search("jeunet", 10)).containsExactly(2);
+	}
+
+	private static MovieDto movie(int movieId, String title, String director, Set<String> movieCast) {
+		return new MovieDto(movieId, 2001, title, "Comedy", director, "Studio", "poster.png", null, movieCast);
+	}
+}
@@ -0,0 +1,57 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieSimilarityIndexTests {
+
+	private MovieSimilarityIndex movieSimilarityIndex;
+
+	@BeforeEach
+	void setUp() {
+		movieSimilarityIndex = new MovieSimilarityIndex(3, 100, new SimpleMeterRegistry());
+		movieSimilarityIndex.index(movie(1, 1999, "Sci-Fi", "Lana Wachowski", Set.of("Keanu Reeves", "Carrie-Anne Moss")));
+		movieSimilarityIndex.index(movie(2, 2003, "Sci-Fi", "Lana Wachowski", Set.of("Keanu Reeves", "Carrie-Anne Moss")));
+		movieSimilarityIndex.index(movie(3, 1994, "Action", "Jan de Bont", Set.of("Keanu Reeves")));
+		movieSimilarityIndex.index(movie(4, 1998, "Sci-Fi", "Someone Else", Set.of("Nobody")));
+		movieSimilarityIndex.index(movie(5, 1970, "Sci-Fi", "Someone Else", Set.of("Nobody")));
+		movieSimilarityIndex.index(movie(6, 1999, "Drama", "Other", Set.of("Other")));
+	}
+
+	@Test
+	void ranksSharedCastAboveDirectorAboveGenre() {
+		assertThat(movieSimilarityIndex.similar(1, 10)).containsExactly(2, 3, 4);
+		assertThat(movieSimilarityIndex.similar(1, 1)).containsExactly(2);
+	}
+
+	@Test
+	void fillsUpWithSameGenreNearestYearFirst() {
+		assertThat(movieSimilarityIndex.similar(4, 10)).containsExactly(5, 1, 2);
+		assertThat(movieSimilarityIndex.similar(6, 10)).isEmpty();
+		assertThat(movieSimilarityIndex.similar(42, 10)).isEmpty();
+	}
+
+	@Test
+	void writesReplaceCachedNeighbors() {
+		assertThat(movieSimilarityIndex.similar(1, 10)).containsExactly(2, 3, 4);
+		assertThat(movieSimilarityIndex.similar(6, 10)).isEmpty();
+
+		// leaves the cast of movie 1 and joins the genre movie 6 is filled up from
+		movieSimilarityIndex.index(movie(3, 1994, "Drama", "Jan de Bont", Set.of("Sandra Bullock")));
+		assertThat(movieSimilarityIndex.similar(1, 10)).containsExactly(2, 4, 5);
+		assertThat(movieSimilarityIndex.similar(6, 10)).containsExactly(3);
+
+		movieSimilarityIndex.remove(2);
+		assertThat(movieSimilarityIndex.similar(1, 10)).containsExactly(4, 5);
+	}
+
+	private static MovieDto movie(int movieId, int releaseYear, String genre, String director, Set<String> movieCast) {
+		return new MovieDto(movieId, releaseYear, "Title " + movieId, genre, director, "Studio", "poster.png", null, movieCast);
+	}
+}
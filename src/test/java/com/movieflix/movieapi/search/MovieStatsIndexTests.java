@@ -0,0 +1,59 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+
+class MovieStatsIndexTests {
+
+	private MovieStatsIndex movieStatsIndex;
+
+	@BeforeEach
+	void setUp() {
+		movieStatsIndex = new MovieStatsIndex();
+		movieStatsIndex.index(movie(1, 1999, "Sci-Fi", "Warner"));
+		movieStatsIndex.index(movie(2, 2003, "Sci-Fi", "Warner"));
+		movieStatsIndex.index(movie(3, 1999, "Drama", "Miramax"));
+	}
+
+	@Test
+	void countsPerValueLargestFirst() {
+		MovieStats stats = movieStatsIndex.stats();
+
+		assertThat(stats.totalMovies()).isEqualTo(3);
+		assertThat(stats.genre()).containsExactly(entry("Sci-Fi", 2L), entry("Drama", 1L));
+		assertThat(stats.releaseYear()).containsExactly(entry(1999, 2L), entry(2003, 1L));
+		assertThat(stats.studio()).containsExactly(entry("Warner", 2L), entry("Miramax", 1L));
+	}
+
+	@Test
+	void updateMovesMovieToItsNewValues() {
+		movieStatsIndex.index(movie(3, 2003, "Sci-Fi", "Miramax"));
+
+		MovieStats stats = movieStatsIndex.stats();
+		assertThat(stats.totalMovies()).isEqualTo(3);
+		assertThat(stats.genre()).containsExactly(entry("Sci-Fi", 3L));
+		assertThat(stats.releaseYear()).containsExactly(entry(2003, 2L), entry(1999, 1L));
+	}
+
+	@Test
+	void removeDropsValuesNoMovieHasAnyMore() {
+		movieStatsIndex.remove(3);
+		movieStatsIndex.remove(42);
+
+		MovieStats stats = movieStatsIndex.stats();
+		assertThat(stats.totalMovies()).isEqualTo(2);
+		assertThat(stats.genre()).containsExactly(entry("Sci-Fi", 2L));
+		assertThat(stats.studio()).containsExactly(entry("Warner", 2L));
+	}
+
+	private static MovieDto movie(int movieId, int releaseYear, String genre, String studio) {
+		return new MovieDto(movieId, releaseYear, "Title " + movieId, genre, "Director", studio, "poster.png", null, Set.of());
+	}
+}
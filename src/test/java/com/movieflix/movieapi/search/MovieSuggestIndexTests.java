@@ -0,0 +1,81 @@
+package com.movieflix.movieapi.search;
+
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieSuggestion;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MovieSuggestIndexTests {
+
+	private MeterRegistry meterRegistry;
+
+	private MovieSuggestIndex movieSuggestIndex;
+
+	@BeforeEach
+	void setUp() {
+		meterRegistry = new SimpleMeterRegistry();
+		movieSuggestIndex = new MovieSuggestIndex(meterRegistry);
+		movieSuggestIndex.index(movie(1, "The Matrix", Set.of("Keanu Reeves", "Carrie-Anne Moss")));
+		movieSuggestIndex.index(movie(2, "The Matrix Reloaded", Set.of("Keanu Reeves")));
+		movieSuggestIndex.index(movie(3, "Amélie", Set.of("Audrey Tautou")));
+	}
+
+	@Test
+	void matchesTitleWordsAndCastNamesByPrefix() {
+		assertThat(movieSuggestIndex.suggest("MATR", 10)).containsExactly(
+				new MovieSuggestion("The Matrix", MovieSuggestIndex.TITLE, 1),
+				new MovieSuggestion("The Matrix Reloaded", MovieSuggestIndex.TITLE, 2));
+		assertThat(movieSuggestIndex.suggest("ame", 10)).containsExactly(
+				new MovieSuggestion("Amélie", MovieSuggestIndex.TITLE, 3));
+		// shared by two movies but suggested once
+		assertThat(movieSuggestIndex.suggest("keanu", 10)).containsExactly(
+				new MovieSuggestion("Keanu Reeves", MovieSuggestIndex.CAST, null));
+	}
+
+	@Test
+	void honoursLimitAndSuggestsEachTitleOnce() {
+		movieSuggestIndex.index(movie(4, "Matrix of Matrices", Set.of()));
+
+		assertThat(movieSuggestIndex.suggest("the", 1)).extracting(MovieSuggestion::movieId).containsExactly(1);
+		// "matrices" sorts first, movie 4 also matches from its first word
+		assertThat(movieSuggestIndex.suggest("matri", 10)).extracting(MovieSuggestion::movieId).containsExactly(4, 1, 2);
+		assertThat(movieSuggestIndex.suggest("  ", 10)).isEmpty();
+	}
+
+	@Test
+	void reindexAndRemoveReplacePreviousEntries() {
+		movieSuggestIndex.index(movie(1, "Speed", Set.of("Keanu Reeves")));
+		movieSuggestIndex.remove(2);
+
+		assertThat(movieSuggestIndex.suggest("matrix", 10)).isEmpty();
+		assertThat(movieSuggestIndex.suggest("carrie", 10)).isEmpty();
+		assertThat(movieSuggestIndex.suggest("keanu", 10)).hasSize(1);
+
+		movieSuggestIndex.remove(1);
+		assertThat(movieSuggestIndex.suggest("keanu", 10)).isEmpty();
+	}
+
+	@Test
+	void reportsEstimatedMemoryPerTitle() {
+		double memory = meterRegistry.get("movie.suggest.memory").gauge().value();
+
+		assertThat(memory).isPositive();
+		assertThat(meterRegistry.get("movie.suggest.memory.per.title").gauge().value()).isEqualTo(memory / 3);
+
+		movieSuggestIndex.remove(1);
+		movieSuggestIndex.remove(2);
+		movieSuggestIndex.remove(3);
+		assertThat(meterRegistry.get("movie.suggest.memory").gauge().value()).isZero();
+		assertThat(meterRegistry.get("movie.suggest.entries").gauge().value()).isZero();
+	}
+
+	private static MovieDto movie(int movieId, String title, Set<String> movieCast) {
+		return new MovieDto(movieId, 2001, title, "Drama", "Director", "Studio", "poster.png", null, movieCast);
+	}
+}
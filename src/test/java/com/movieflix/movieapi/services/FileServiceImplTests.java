@@ -0,0 +1,225 @@
+package com.movieflix.movieapi.services;
+
+import com.movieflix.movieapi.cache.PosterCache;
+import com.movieflix.movieapi.exceptions.PosterNotFoundException;
+import com.movieflix.movieapi.repositories.PosterReferenceRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+// references are counted in committed transactions, so the test must not wrap them in one; a movie write holds
+// one connection, storing and deleting its poster must not need a second one
+@DataJpaTest(properties = {"spring.datasource.url=jdbc:h2:mem:files", "spring.datasource.hikari.maximum-pool-size=1",
+		"spring.datasource.hikari.connection-timeout=250"})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import(FileServiceImpl.class)
+class FileServiceImplTests {
+
+	// SHA-256 of "poster"
+	private static final String HASH = "293b9207228b7854bc3ccb2959ebea1583e066d41983124a5b381d6fdf6575f8";
+
+	@TempDir
+	private Path posterDir;
+
+	@Autowired
+	private FileService fileService;
+
+	@Autowired
+	private PosterReferenceRepository posterReferenceRepository;
+
+	@Autowired
+	private PlatformTransactionManager transactionManager;
+
+	@MockBean
+	private ThumbnailService thumbnailService;
+
+	@MockBean
+	private PosterCache posterCache;
+
+	@AfterEach
+	void tearDown() {
+		posterReferenceRepository.deleteAll();
+	}
+
+	@Test
+	void storesUploadsUnderTheHashOfTheirContentInShards() throws Exception {
+		String fileName = fileService.uploadFile(posterDir.toString(), upload("Poster.JPG", "poster"));
+
+		Path stored = posterDir.resolve("29").resolve("3b").resolve(HASH + ".jpg");
+		assertThat(fileName).isEqualTo(HASH + ".jpg");
+		assertThat(stored).hasContent("poster");
+		assertThat(fileService.getResourceFile(posterDir.toString(), fileName)).isEqualTo(stored);
+		assertThat(posterDir).isDirectoryNotContaining(file -> file.getFileName().toString().endsWith(".tmp"));
+		assertThat(fileService.getETag(fileName)).isEqualTo('"' + HASH + '"');
+		assertThat(fileService.getETag("poster.jpg")).isNull();
+		verify(thumbnailService).createThumbnailsAsync(stored);
+	}
+
+	@Test
+	void thumbnailsAreCreatedOnceTheMovieWriteCommitted() {
+		Path stored = posterDir.resolve("29").resolve("3b").resolve(HASH + ".png");
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			upload("one.png");
+			verify(thumbnailService, never()).createThumbnailsAsync(any());
+		});
+		verify(thumbnailService).createThumbnailsAsync(stored);
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			upload("two.png");
+			status.setRollbackOnly();
+		});
+		verify(thumbnailService).createThumbnailsAsync(stored);
+	}
+
+	@Test
+	void identicalUploadsShareOneFileUntilTheLastIsDeleted() throws Exception {
+		String first = fileService.uploadFile(posterDir.toString(), upload("one.png", "poster"));
+		String second = fileService.uploadFile(posterDir.toString(), upload("two.png", "poster"));
+		Path stored = fileService.getResourceFile(posterDir.toString(), first);
+
+		assertThat(second).isEqualTo(first);
+		assertThat(posterReferenceRepository.findById(first).orElseThrow().getReferenceCount()).isEqualTo(2);
+
+		fileService.deleteFile(posterDir.toString(), first);
+		assertThat(stored).exists();
+
+		fileService.deleteFile(posterDir.toString(), second);
+		assertThat(stored).doesNotExist();
+		verify(thumbnailService).deleteThumbnails(stored);
+		verify(posterCache).evict(first);
+	}
+
+	@Test
+	void deletesHashedPostersStoredBeforeSharding() throws Exception {
+		Path stored = Files.writeString(posterDir.resolve(HASH + ".png"), "poster");
+
+		fileService.deleteFile(posterDir.toString(), HASH + ".png");
+
+		assertThat(stored).doesNotExist();
+		verify(thumbnailService).deleteThumbnails(stored);
+		verify(posterCache).evict(HASH + ".png");
+	}
+
+	@Test
+	void storesAndDeletesWithinTheMovieWriteOnItsConnection() throws Exception {
+		String fileName = fileService.uploadFile(posterDir.toString(), upload("one.png", "poster"));
+		Path stored = fileService.getResourceFile(posterDir.toString(), fileName);
+
+		//a movie updated with the poster it had
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			delete(fileName);
+			upload("two.png");
+		});
+		assertThat(stored).hasContent("poster");
+		assertThat(posterReferenceRepository.findById(fileName).orElseThrow().getReferenceCount()).isEqualTo(1);
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> delete(fileName));
+		assertThat(stored).doesNotExist();
+		assertThat(stored.getParent()).isEmptyDirectory();
+		assertThat(posterReferenceRepository.findById(fileName).orElseThrow().getReferenceCount()).isZero();
+	}
+
+	@Test
+	void standaloneUploadsTakeNoReference() throws Exception {
+		String standalone = fileService.uploadStandaloneFile(posterDir.toString(), upload("one.png", "poster"));
+		Path stored = fileService.getResourceFile(posterDir.toString(), standalone);
+		assertThat(posterReferenceRepository.findById(standalone).orElseThrow().getReferenceCount()).isZero();
+
+		String poster = fileService.uploadFile(posterDir.toString(), upload("two.png", "poster"));
+		assertThat(poster).isEqualTo(standalone);
+		assertThat(posterReferenceRepository.findById(poster).orElseThrow().getReferenceCount()).isEqualTo(1);
+
+		fileService.deleteFile(posterDir.toString(), poster);
+		assertThat(stored).doesNotExist();
+	}
+
+	@Test
+	void deleteIsUndoneWithTheTransaction() throws Exception {
+		String fileName = fileService.uploadFile(posterDir.toString(), upload("one.png", "poster"));
+		Path stored = fileService.getResourceFile(posterDir.toString(), fileName);
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			try {
+				fileService.deleteFile(posterDir.toString(), fileName);
+			} catch (Exception e) {
+				throw new IllegalStateException(e);
+			}
+			status.setRollbackOnly();
+		});
+
+		assertThat(stored).exists();
+		assertThat(posterReferenceRepository.findById(fileName).orElseThrow().getReferenceCount()).isEqualTo(1);
+	}
+
+	@Test
+	void postersFromBeforeHashingAreDeletedWithTheTransaction() throws Exception {
+		Path stored = Files.writeString(posterDir.resolve("poster.png"), "poster");
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+			delete("poster.png");
+			assertThat(stored).exists();
+			status.setRollbackOnly();
+		});
+		assertThat(stored).exists();
+
+		new TransactionTemplate(transactionManager).executeWithoutResult(status -> delete("poster.png"));
+		assertThat(stored).doesNotExist();
+		verify(thumbnailService).deleteThumbnails(stored);
+		verify(posterCache).evict("poster.png");
+	}
+
+	@Test
+	void servesOnlyFilesInsideTheDirectory() throws Exception {
+		Path posters = Files.createDirectory(posterDir.resolve("posters"));
+		Files.writeString(posters.resolve("poster.png"), "poster");
+		Files.writeString(posterDir.resolve("secret.txt"), "secret");
+
+		assertThat(fileService.getResourceFile(posters.toString(), "poster.png")).hasContent("poster");
+		assertThatThrownBy(() -> fileService.getResourceFile(posters.toString(), "../secret.txt"))
+				.isInstanceOf(PosterNotFoundException.class);
+		assertThatThrownBy(() -> fileService.getResourceFile(posters.toString(), "missing.png"))
+				.isInstanceOf(PosterNotFoundException.class);
+	}
+
+	private void upload(String fileName) {
+		try {
+			fileService.uploadFile(posterDir.toString(), upload(fileName, "poster"));
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private void delete(String fileName) {
+		try {
+			fileService.deleteFile(posterDir.toString(), fileName);
+		} catch (Exception e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static MockMultipartFile upload(String fileName, String content) {
+		return new MockMultipartFile("file", fileName, "image/jpeg", content.getBytes(StandardCharsets.UTF_8));
+	}
+}
@@ -0,0 +1,252 @@
+package com.movieflix.movieapi.services;
+
+import com.movieflix.movieapi.cache.PosterCache;
+import com.movieflix.movieapi.dto.MovieCastMember;
+import com.movieflix.movieapi.dto.MovieImportError;
+import com.movieflix.movieapi.dto.MovieImportResponse;
+import com.movieflix.movieapi.dto.MovieSummary;
+import com.movieflix.movieapi.entities.Movie;
+import com.movieflix.movieapi.entities.PosterReference;
+import com.movieflix.movieapi.events.MovieChangedEvent;
+import com.movieflix.movieapi.exceptions.InvalidPosterArchiveException;
+import com.movieflix.movieapi.repositories.MovieRepository;
+import com.movieflix.movieapi.repositories.PosterReferenceRepository;
+import com.movieflix.movieapi.utils.CsvUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.context.event.EventListener;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+// batches commit in their own transactions, so the test must not wrap them in one
+@DataJpaTest(properties = {"project.import.batch-size=2", "project.import.max-poster-size=1KB",
+		"project.import.max-extracted-size=8KB"})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+@Import({MovieImportServiceImpl.class, FileServiceImpl.class, MovieImportServiceImplTests.FailingListener.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+class MovieImportServiceImplTests {
+
+	@TempDir
+	static Path posterDir;
+
+	@Autowired
+	private MovieImportService movieImportService;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private PosterReferenceRepository posterReferenceRepository;
+
+	@MockBean
+	private ThumbnailService thumbnailService;
+
+	@MockBean
+	private PosterCache posterCache;
+
+	@DynamicPropertySource
+	static void posterPath(DynamicPropertyRegistry registry) {
+		registry.add("project.poster", posterDir::toString);
+	}
+
+	@AfterEach
+	void tearDown() {
+		movieRepository.deleteAll();
+	}
+
+	@Test
+	void importsValidNdjsonRowsAndReportsTheOthers() throws Exception {
+		String ndjson = """
+				{"releaseYear":2001,"title":"One","genre":"Drama","director":"D","studio":"S","poster":"one.png","movieCast":["A","B"]}
+				{"releaseYear":2002,"title":"Two","genre":"Drama","director":"D","studio":"S","poster":"two.png","movieCast":["C"]}
+				not json
+				{"releaseYear":2003,"genre":"Drama","director":"D","studio":"S","poster":"three.png"}
+				{"releaseYear":2004,"title":"Four","genre":"Drama","director":"D","studio":"S","poster":"missing.png"}
+				{"releaseYear":2005,"title":"Five","genre":"Drama","director":"D","studio":"S","poster":"five.png","movieCast":[]}
+				""";
+
+		MovieImportResponse response = movieImportService.importMovies(
+				new MockMultipartFile("movies", "movies.ndjson", "application/x-ndjson", ndjson.getBytes(StandardCharsets.UTF_8)),
+				posters("one.png", "two.png", "three.png", "five.png"));
+
+		assertThat(response.totalRows()).isEqualTo(6);
+		assertThat(response.importedRows()).isEqualTo(3);
+		assertThat(response.errors()).extracting(MovieImportError::row).containsExactly(3, 4, 5);
+		assertThat(movieRepository.findAllSummaries()).hasSize(3);
+		assertThat(movieRepository.findAllCast()).hasSize(3);
+		assertThat(movieRepository.findAll()).allSatisfy(movie -> assertThat(movie.getUpdatedAt()).isNotNull());
+		assertThat(movieRepository.findAllSummaries()).extracting(MovieSummary::poster)
+				.containsExactlyInAnyOrder(storedName("one.png"), storedName("two.png"), storedName("five.png"));
+		assertThat(storedFile("one.png")).exists();
+		assertThat(storedFile("three.png")).doesNotExist();
+
+		//inserted through JDBC, yet like an entity Hibernate persists, and loaded back by the mapping
+		Long persistedVersion = movieRepository.saveAndFlush(
+				new Movie(null, 2006, "Six", "Drama", "D", "S", "six.png", Set.of("E"))).getVersion();
+		assertThat(movieRepository.findAll()).extracting(Movie::getVersion).containsOnly(persistedVersion);
+	}
+
+	@Test
+	void failedBatchIsRetriedRowByRow() throws Exception {
+		String csv = "title,releaseYear,genre,director,studio,poster,movieCast\n"
+				+ "\"Six, the movie\",2006,Drama,D,S,six.png,A|B\n"
+				+ "x".repeat(300) + ",2007,Drama,D,S,seven.png,\n";
+
+		MovieImportResponse response = movieImportService.importMovies(
+				new MockMultipartFile("movies", "movies.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)),
+				posters("six.png", "seven.png"));
+
+		assertThat(response.importedRows()).isEqualTo(1);
+		assertThat(response.errors()).extracting(MovieImportError::row).containsExactly(3);
+		assertThat(movieRepository.findAllSummaries()).singleElement()
+				.satisfies(movie -> assertThat(movie.title()).isEqualTo("Six, the movie"));
+		assertThat(storedFile("seven.png")).doesNotExist();
+	}
+
+	@Test
+	void importsQuotedFieldsThatSpanLinesAsTheyAreExported() throws Exception {
+		String title = "Ten\nthe \"sequel\"";
+		String csv = "title,releaseYear,genre,director,studio,poster,movieCast\n"
+				+ String.join(",", CsvUtils.escape(title), CsvUtils.escape(2010), "Drama", "D", "S", "ten.png",
+						CsvUtils.escape("A\nB|C")) + "\n"
+				+ "Eleven,not a year,Drama,D,S,eleven.png,\n";
+
+		MovieImportResponse response = movieImportService.importMovies(
+				new MockMultipartFile("movies", "movies.csv", "text/csv", csv.getBytes(StandardCharsets.UTF_8)),
+				posters("ten.png", "eleven.png"));
+
+		assertThat(response.importedRows()).isEqualTo(1);
+		//the bad row is reported by the line it is on, after the three lines of the first one
+		assertThat(response.errors()).extracting(MovieImportError::row).containsExactly(5);
+		assertThat(movieRepository.findAllSummaries()).singleElement()
+				.satisfies(movie -> assertThat(movie.title()).isEqualTo(title));
+		assertThat(movieRepository.findAllCast()).extracting(MovieCastMember::name)
+				.containsExactlyInAnyOrder("A\nB", "C");
+	}
+
+	@Test
+	void postersOverTheSizeLimitAreReported() throws Exception {
+		String ndjson = """
+				{"releaseYear":2012,"title":"Twelve","genre":"Drama","director":"D","studio":"S","poster":"twelve.png"}
+				{"releaseYear":2013,"title":"Thirteen","genre":"Drama","director":"D","studio":"S","poster":"thirteen.png"}
+				""";
+
+		MovieImportResponse response = movieImportService.importMovies(
+				new MockMultipartFile("movies", "movies.ndjson", "application/x-ndjson", ndjson.getBytes(StandardCharsets.UTF_8)),
+				archive(Map.of("twelve.png", new byte[1025], "thirteen.png", new byte[1024])));
+
+		assertThat(response.importedRows()).isEqualTo(1);
+		assertThat(response.errors()).singleElement()
+				.satisfies(error -> assertThat(error.message()).isEqualTo("Poster twelve.png is larger than 1024 bytes!"));
+	}
+
+	@Test
+	void archivesUnpackingToMoreThanTheLimitAreRejected() {
+		String ndjson = """
+				{"releaseYear":2014,"title":"Fourteen","genre":"Drama","director":"D","studio":"S","poster":"fourteen.png"}
+				""";
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		for (int i = 0; i < 8; i++) {
+			//not wanted by any row, but unpacked all the same
+			entries.put("filler" + i + ".png", new byte[1024]);
+		}
+		entries.put("fourteen.png", "fourteen.png".getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> movieImportService.importMovies(
+				new MockMultipartFile("movies", "movies.ndjson", "application/x-ndjson", ndjson.getBytes(StandardCharsets.UTF_8)),
+				archive(entries)))
+				.isInstanceOf(InvalidPosterArchiveException.class);
+		assertThat(movieRepository.count()).isZero();
+	}
+
+	@Test
+	void failedImportTakesItsPostersBack() throws Exception {
+		String ndjson = """
+				{"releaseYear":2008,"title":"Eight","genre":"Drama","director":"D","studio":"S","poster":"eight.png"}
+				{"releaseYear":2009,"title":"%s","genre":"Drama","director":"D","studio":"S","poster":"nine.png"}
+				""".formatted(FailingListener.FAILING_TITLE);
+
+		assertThatThrownBy(() -> movieImportService.importMovies(
+				new MockMultipartFile("movies", "movies.ndjson", "application/x-ndjson", ndjson.getBytes(StandardCharsets.UTF_8)),
+				posters("eight.png", "nine.png")))
+				.isInstanceOf(IllegalStateException.class);
+
+		assertThat(movieRepository.count()).isZero();
+		for (String poster : List.of("eight.png", "nine.png")) {
+			assertThat(storedFile(poster)).doesNotExist();
+			//the row was inserted by the rolled back transaction too
+			assertThat(posterReferenceRepository.findById(storedName(poster)).map(PosterReference::getReferenceCount)).isEmpty();
+		}
+	}
+
+	// posters are stored under the hash of their content, which is their file name here
+	private static String storedName(String fileName) throws NoSuchAlgorithmException {
+		byte[] hash = MessageDigest.getInstance("SHA-256").digest(fileName.getBytes(StandardCharsets.UTF_8));
+		return HexFormat.of().formatHex(hash) + ".png";
+	}
+
+	private static Path storedFile(String fileName) throws NoSuchAlgorithmException {
+		String storedName = storedName(fileName);
+		return posterDir.resolve(storedName.substring(0, 2)).resolve(storedName.substring(2, 4)).resolve(storedName);
+	}
+
+	private static MockMultipartFile posters(String... fileNames) throws IOException {
+		Map<String, byte[]> entries = new LinkedHashMap<>();
+		for (String fileName : fileNames) {
+			entries.put(fileName, fileName.getBytes(StandardCharsets.UTF_8));
+		}
+		return archive(entries);
+	}
+
+	private static MockMultipartFile archive(Map<String, byte[]> entries) throws IOException {
+		ByteArrayOutputStream archive = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(archive)) {
+			for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+				zip.putNextEntry(new ZipEntry("posters/" + entry.getKey()));
+				zip.write(entry.getValue());
+				zip.closeEntry();
+			}
+		}
+		return new MockMultipartFile("posters", "posters.zip", "application/zip", archive.toByteArray());
+	}
+
+	// fails a write the way a bug would, with neither a DataAccessException nor an IOException
+	static class FailingListener {
+
+		static final String FAILING_TITLE = "Fails";
+
+		@EventListener
+		void onMovieChanged(MovieChangedEvent event) {
+			if (FAILING_TITLE.equals(event.movie().getTitle())) {
+				throw new IllegalStateException("Listener failed");
+			}
+		}
+	}
+}
@@ -0,0 +1,296 @@
+package com.movieflix.movieapi.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.movieflix.movieapi.cache.MovieCache;
+import com.movieflix.movieapi.cache.MovieCount;
+import com.movieflix.movieapi.dto.MovieCursorPageResponse;
+import com.movieflix.movieapi.dto.MovieDto;
+import com.movieflix.movieapi.dto.MovieExport;
+import com.movieflix.movieapi.dto.MovieFacetResponse;
+import com.movieflix.movieapi.dto.MovieFilter;
+import com.movieflix.movieapi.dto.MoviePageResponse;
+import com.movieflix.movieapi.dto.MovieSliceResponse;
+import com.movieflix.movieapi.dto.SerializedMovie;
+import com.movieflix.movieapi.entities.Movie;
+import com.movieflix.movieapi.exceptions.InvalidCursorException;
+import com.movieflix.movieapi.exceptions.InvalidLimitException;
+import com.movieflix.movieapi.exceptions.InvalidPatchException;
+import com.movieflix.movieapi.exceptions.InvalidSortFieldException;
+import com.movieflix.movieapi.repositories.MovieRepository;
+import com.movieflix.movieapi.search.MovieSearchIndex;
+import com.movieflix.movieapi.search.MovieSimilarityIndex;
+import com.movieflix.movieapi.search.MovieStatsIndex;
+import com.movieflix.movieapi.search.MovieSuggestIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Set;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.entry;
+
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({MovieServiceImpl.class, MovieCache.class, MovieCount.class, MovieSearchIndex.class, MovieSuggestIndex.class,
+		MovieSimilarityIndex.class, MovieStatsIndex.class, MovieServiceImplTests.MetricsConfig.class})
+class MovieServiceImplTests {
+
+	private static final int CATALOG_SIZE = 100;
+
+	@Autowired
+	private MovieService movieService;
+
+	@Autowired
+	private EntityManager entityManager;
+
+	@Autowired
+	private MovieRepository movieRepository;
+
+	@Autowired
+	private ObjectMapper objectMapper;
+
+	@Autowired
+	private MovieCount movieCount;
+
+	@Autowired
+	private MovieStatsIndex movieStatsIndex;
+
+	@MockBean
+	private FileService fileService;
+
+	@BeforeEach
+	void setUp() {
+		for (int i = 0; i < CATALOG_SIZE; i++) {
+			entityManager.persist(new Movie(null, 2000 + i % 20, "Title " + i, "Drama", "Director " + i,
+					"Studio", "poster-" + i + ".png", Set.of("Actor " + i, "Actor " + (i + 1))));
+		}
+		entityManager.flush();
+		entityManager.clear();
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {1, 10, 50, 100})
+	void pageLoadsCastWithConstantStatementCount(int pageSize) {
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		MoviePageResponse page = movieService.getAllMoviesWithPaginationAndSorting(0, pageSize, "title", "asc");
+
+		assertThat(page.movieDtos()).hasSize(pageSize);
+		assertThat(page.movieDtos()).allSatisfy(dto -> assertThat(dto.getMovieCast()).hasSize(2));
+		// page query, count query and one query for the cast of the whole page
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(3);
+	}
+
+	@Test
+	void sliceSkipsTheCountQuery() {
+		movieCount.refresh();
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		MovieSliceResponse slice = movieService.getAllMoviesWithSlice(0, 10, "title", "asc");
+
+		assertThat(slice.movieDtos()).hasSize(10);
+		assertThat(slice.hasNext()).isTrue();
+		assertThat(slice.approximateTotalElements()).isEqualTo(CATALOG_SIZE);
+		// slice query and one query for the cast of the whole slice
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+
+		assertThat(movieService.getAllMoviesWithSlice(9, 10, "title", "asc").hasNext()).isFalse();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"asc", "desc"})
+	void cursorWalksWholeCatalogOnce(String dir) {
+		List<Integer> movieIds = new ArrayList<>();
+		String cursor = null;
+		do {
+			MovieCursorPageResponse page = movieService.getAllMoviesWithCursor(cursor, 7, "releaseYear", dir);
+			page.movieDtos().stream().map(MovieDto::getMovieId).forEach(movieIds::add);
+			cursor = page.nextCursor();
+		} while (cursor != null);
+
+		assertThat(movieIds).hasSize(CATALOG_SIZE).doesNotHaveDuplicates();
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"{}", "{\"movieId\":5}", "{\"releaseYear\":2001,\"movieId\":5,\"title\":\"x\"}",
+			"{\"releaseYear\":\"2001\",\"movieId\":5}", "{\"releaseYear\":2001,\"movieId\":null}"})
+	void tamperedCursorKeysAreRejected(String keys) {
+		String cursor = Base64.getUrlEncoder().encodeToString(
+				("{\"sortBy\":\"releaseYear\",\"dir\":\"asc\",\"keys\":" + keys + "}").getBytes(StandardCharsets.UTF_8));
+
+		assertThatThrownBy(() -> movieService.getAllMoviesWithCursor(cursor, 7, "releaseYear", "asc"))
+				.isInstanceOf(InvalidCursorException.class);
+	}
+
+	@ParameterizedTest
+	@ValueSource(ints = {0, -1})
+	void changesNeedAPositiveLimit(int limit) {
+		assertThatThrownBy(() -> movieService.getChanges(0L, limit))
+				.isInstanceOf(InvalidLimitException.class);
+	}
+
+	@Test
+	void facetCountsIgnoreTheirOwnCriterion() {
+		MovieFacetResponse response = movieService.getMoviesWithFacets(new MovieFilter("Drama", 2005, 2009, null), 0, 10);
+
+		assertThat(response.movies().totalElements()).isEqualTo(25);
+		assertThat(response.movies().movieDtos()).hasSize(10)
+				.allSatisfy(dto -> assertThat(dto.getReleaseYear()).isBetween(2005, 2009));
+		assertThat(response.genre()).containsExactly(entry("Drama", 25L));
+		// the year facet is counted without the year range so other years stay selectable
+		assertThat(response.releaseYear()).hasSize(20).containsEntry(2000, 5L);
+		assertThat(response.studio()).containsExactly(entry("Studio", 25L));
+	}
+
+	@Test
+	void facetsWithoutOtherCriteriaAreCountedInMemory() {
+		movieService.streamAllMovies(movieStatsIndex::index);
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		MovieFacetResponse response = movieService.getMoviesWithFacets(new MovieFilter(null, 2005, 2009, null), 0, 10);
+
+		assertThat(response.releaseYear()).hasSize(20).containsEntry(2000, 5L);
+		assertThat(response.genre()).containsExactly(entry("Drama", 25L));
+		assertThat(response.studio()).containsExactly(entry("Studio", 25L));
+		// page query, count query, the cast of the page and the genre and studio facets under the year range
+		assertThat(statistics.getPrepareStatementCount()).isEqualTo(5);
+	}
+
+	@Test
+	void unfilteredPagesTakeTheirTotalFromTheStatsIndex() {
+		movieService.streamAllMovies(movieStatsIndex::index);
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		try {
+			MovieFacetResponse response = movieService.getMoviesWithFacets(new MovieFilter(null, null, null, null), 9, 10);
+
+			assertThat(response.movies().movieDtos()).hasSize(10);
+			assertThat(response.movies().totalElements()).isEqualTo(CATALOG_SIZE);
+			assertThat(response.movies().isLast()).isTrue();
+			// page query and the cast of the page, no count query
+			assertThat(statistics.getPrepareStatementCount()).isEqualTo(2);
+		} finally {
+			//the index outlives the test, the movies are rolled back
+			movieService.streamAllMovies(movie -> movieStatsIndex.remove(movie.getMovieId()));
+		}
+	}
+
+	@ParameterizedTest
+	@ValueSource(strings = {"poster", "studio", "movieCast"})
+	void unindexedSortFieldsAreRejected(String sortBy) {
+		assertThatThrownBy(() -> movieService.getAllMoviesWithPaginationAndSorting(0, 10, sortBy, "asc"))
+				.isInstanceOf(InvalidSortFieldException.class);
+		assertThatThrownBy(() -> movieService.getAllMoviesWithCursor(null, 10, sortBy, "asc"))
+				.isInstanceOf(InvalidSortFieldException.class);
+	}
+
+	@Test
+	void exportGroupsCastRowsPerMovie() {
+		List<MovieExport> movies = new ArrayList<>();
+		movieService.exportMovies(null, movies::add);
+
+		assertThat(movies).hasSize(CATALOG_SIZE).extracting(MovieExport::movieId).isSorted().doesNotHaveDuplicates();
+		assertThat(movies).allSatisfy(movie -> {
+			assertThat(movie.movieCast()).hasSize(2);
+			assertThat(movie.updatedAt()).isNotNull();
+		});
+
+		List<MovieExport> changedLater = new ArrayList<>();
+		movieService.exportMovies(Instant.now().plus(1, ChronoUnit.HOURS), changedLater::add);
+		assertThat(changedLater).isEmpty();
+	}
+
+	@Test
+	void updateBumpsVersionOfTheMovie() throws Exception {
+		MovieDto movie = movieService.getMovie(movieRepository.findAllSummaries().get(0).movieId());
+		Long version = movieService.getMovieVersion(movie.getMovieId()).version();
+
+		movie.setTitle("Renamed");
+		movieService.updateMovie(movie.getMovieId(), movie, null);
+
+		assertThat(movieRepository.findVersionById(movie.getMovieId()))
+				.hasValueSatisfying(updated -> assertThat(updated.version()).isEqualTo(version + 1));
+	}
+
+	@Test
+	void patchWritesOnlyWhatChanged() throws Exception {
+		Integer movieId = movieRepository.findAllSummaries().get(0).movieId();
+		Long version = movieRepository.findVersionById(movieId).orElseThrow().version();
+		Statistics statistics = entityManager.getEntityManagerFactory().unwrap(SessionFactory.class).getStatistics();
+		statistics.clear();
+
+		MovieDto patched = movieService.patchMovie(movieId, objectMapper.readTree("{\"title\": \"Patched\"}"), null);
+		entityManager.flush();
+
+		assertThat(patched.getTitle()).isEqualTo("Patched");
+		assertThat(patched.getMovieCast()).hasSize(2);
+		assertThat(statistics.getEntityUpdateCount()).isEqualTo(1);
+		assertThat(statistics.getCollectionUpdateCount()).isZero();
+
+		Instant before = movieRepository.findVersionById(movieId).orElseThrow().updatedAt();
+		String cast = objectMapper.writeValueAsString(Set.of(patched.getMovieCast().iterator().next(), "New Actor"));
+		patched = movieService.patchMovie(movieId, objectMapper.readTree("{\"movieCast\": " + cast + "}"), null);
+		entityManager.flush();
+
+		assertThat(patched.getMovieCast()).hasSize(2).contains("New Actor");
+		assertThat(movieRepository.findVersionById(movieId).orElseThrow().updatedAt()).isAfter(before);
+		assertThat(statistics.getCollectionUpdateCount()).isEqualTo(1);
+		assertThat(movieRepository.findVersionById(movieId).orElseThrow().version()).isEqualTo(version + 2);
+
+		assertThatThrownBy(() -> movieService.patchMovie(movieId, objectMapper.readTree("{\"poster\": \"other.png\"}"), null))
+				.isInstanceOf(InvalidPatchException.class);
+		assertThatThrownBy(() -> movieService.patchMovie(movieId, objectMapper.readTree("{\"title\": null}"), null))
+				.isInstanceOf(InvalidPatchException.class);
+	}
+
+	@Test
+	void serializedMovieIsCachedWithItsGzipCopy() throws IOException {
+		Integer movieId = movieRepository.findAllSummaries().get(0).movieId();
+
+		SerializedMovie movie = movieService.getSerializedMovie(movieId);
+
+		assertThat(movieService.getSerializedMovie(movieId)).isSameAs(movie);
+		assertThat(objectMapper.readValue(movie.json(), MovieDto.class)).isEqualTo(movieService.getMovie(movieId));
+		try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(movie.gzip()))) {
+			assertThat(gzip.readAllBytes()).isEqualTo(movie.json());
+		}
+	}
+
+	@TestConfiguration
+	static class MetricsConfig {
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+}
@@ -0,0 +1,58 @@
+package com.movieflix.movieapi.services;
+
+import com.movieflix.movieapi.cache.MovieCache;
+import com.movieflix.movieapi.cache.MovieCount;
+import com.movieflix.movieapi.exceptions.SimilarMoviesDisabledException;
+import com.movieflix.movieapi.search.MovieIndex;
+import com.movieflix.movieapi.search.MovieSearchIndex;
+import com.movieflix.movieapi.search.MovieSimilarityIndex;
+import com.movieflix.movieapi.search.MovieStatsIndex;
+import com.movieflix.movieapi.search.MovieSuggestIndex;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DataJpaTest(properties = "project.similar.enabled=false")
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
+@Import({MovieServiceImpl.class, MovieCache.class, MovieCount.class, MovieSearchIndex.class, MovieSuggestIndex.class,
+		MovieSimilarityIndex.class, MovieStatsIndex.class, SimilarMoviesDisabledTests.MetricsConfig.class})
+class SimilarMoviesDisabledTests {
+
+	@Autowired
+	private MovieService movieService;
+
+	@Autowired
+	private List<MovieIndex> movieIndexes;
+
+	@MockBean
+	private FileService fileService;
+
+	@Test
+	void theIndexIsNotBuiltAndSimilarMoviesAreRefused() {
+		assertThat(movieIndexes).noneMatch(MovieSimilarityIndex.class::isInstance);
+		assertThatThrownBy(() -> movieService.getSimilarMovies(1, 10))
+				.isInstanceOf(SimilarMoviesDisabledException.class);
+	}
+
+	@TestConfiguration
+	static class MetricsConfig {
+
+		@Bean
+		MeterRegistry meterRegistry() {
+			return new SimpleMeterRegistry();
+		}
+	}
+}
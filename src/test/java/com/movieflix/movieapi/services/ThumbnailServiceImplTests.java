@@ -0,0 +1,134 @@
+package com.movieflix.movieapi.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThumbnailServiceImplTests {
+
+	@TempDir
+	private Path posterDir;
+
+	private final ThumbnailServiceImpl thumbnailService =
+			new ThumbnailServiceImpl(List.of(640, 160, 320), 2, 10, 10_000_000, new SimpleMeterRegistry());
+
+	@AfterEach
+	void tearDown() {
+		thumbnailService.destroy();
+	}
+
+	@Test
+	void roundsRequestedWidthsToConfiguredOnes() {
+		assertThat(thumbnailService.thumbnailWidth(1)).isEqualTo(160);
+		assertThat(thumbnailService.thumbnailWidth(161)).isEqualTo(320);
+		assertThat(thumbnailService.thumbnailWidth(320)).isEqualTo(320);
+		assertThat(thumbnailService.thumbnailWidth(5000)).isEqualTo(640);
+	}
+
+	@Test
+	void scalesDownKeepingTheAspectRatio() throws Exception {
+		Path poster = poster("poster.png", 1000, 1500);
+
+		Path thumbnail = thumbnailService.getThumbnail(poster, 320);
+
+		assertThat(thumbnail).isEqualTo(posterDir.resolve("poster-w320.png"));
+		BufferedImage image = ImageIO.read(thumbnail.toFile());
+		assertThat(image.getWidth()).isEqualTo(320);
+		assertThat(image.getHeight()).isEqualTo(480);
+	}
+
+	@Test
+	void neverScalesUp() throws Exception {
+		Path poster = poster("small.jpg", 100, 150);
+
+		Path thumbnail = thumbnailService.getThumbnail(poster, 640);
+
+		assertThat(ImageIO.read(thumbnail.toFile()).getWidth()).isEqualTo(100);
+		assertThat(Files.mismatch(poster, thumbnail)).isEqualTo(-1);
+	}
+
+	@Test
+	void decodesLargePostersSubsampled() throws Exception {
+		Path poster = poster("large.png", 2000, 3000);
+
+		BufferedImage image = ImageIO.read(thumbnailService.getThumbnail(poster, 160).toFile());
+
+		assertThat(image.getWidth()).isEqualTo(160);
+		assertThat(image.getHeight()).isEqualTo(240);
+	}
+
+	@Test
+	void servesPostersWithTooManyPixelsAsTheyAre() throws Exception {
+		Path poster = poster("poster.png", 4000, 3000);
+
+		assertThat(thumbnailService.getThumbnail(poster, 160)).isEqualTo(poster);
+		assertThat(posterDir.resolve("poster-w160.png")).doesNotExist();
+	}
+
+	@Test
+	void servesFormatsThatCannotBeScaledAsTheyAre() throws Exception {
+		Path poster = Files.writeString(posterDir.resolve("poster.webp"), "not an image ImageIO can read");
+
+		assertThat(thumbnailService.getThumbnail(poster, 160)).isEqualTo(poster);
+	}
+
+	@Test
+	void concurrentRequestsGetTheSameThumbnail() throws Exception {
+		Path poster = poster("poster.jpg", 2000, 3000);
+
+		ExecutorService clients = Executors.newFixedThreadPool(8);
+		try {
+			List<Callable<Path>> requests = IntStream.range(0, 8)
+					.<Callable<Path>>mapToObj(i -> () -> thumbnailService.getThumbnail(poster, 160))
+					.toList();
+			for (Future<Path> thumbnail : clients.invokeAll(requests)) {
+				assertThat(thumbnail.get()).isEqualTo(posterDir.resolve("poster-w160.jpg"));
+			}
+		} finally {
+			clients.shutdown();
+		}
+		assertThat(posterDir).isDirectoryNotContaining(file -> file.getFileName().toString().endsWith(".tmp"));
+	}
+
+	@Test
+	void createsAllWidthsInTheBackgroundAndDeletesThem() throws Exception {
+		Path poster = poster("poster.png", 1000, 1500);
+
+		thumbnailService.createThumbnailsAsync(poster);
+		for (int i = 0; i < 100 && !Files.exists(posterDir.resolve("poster-w640.png")); i++) {
+			Thread.sleep(50);
+		}
+		assertThat(posterDir.resolve("poster-w160.png")).exists();
+		assertThat(posterDir.resolve("poster-w320.png")).exists();
+		assertThat(posterDir.resolve("poster-w640.png")).exists();
+
+		thumbnailService.deleteThumbnails(poster);
+		try (var files = Files.list(posterDir)) {
+			assertThat(files).containsExactly(poster);
+		}
+	}
+
+	private Path poster(String fileName, int width, int height) throws Exception {
+		BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+		for (int x = 0; x < width; x++) {
+			image.setRGB(x, x * height / width, 0xff0000);
+		}
+		Path poster = posterDir.resolve(fileName);
+		ImageIO.write(image, fileName.endsWith(".png") ? "png" : "jpeg", poster.toFile());
+		return poster;
+	}
+}
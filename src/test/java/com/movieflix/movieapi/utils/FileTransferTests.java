@@ -0,0 +1,100 @@
+package com.movieflix.movieapi.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FileTransferTests {
+
+	@TempDir
+	private Path directory;
+
+	private Path poster;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		poster = Files.writeString(directory.resolve("poster.jpg"), "0123456789");
+	}
+
+	@Test
+	void sendsTheWholeFileWithItsTypeAndLength() throws Exception {
+		MockHttpServletResponse response = send(new MockHttpServletRequest("GET", "/file/poster.jpg"));
+
+		assertThat(response.getStatus()).isEqualTo(200);
+		assertThat(response.getContentType()).isEqualTo("image/jpeg");
+		assertThat(response.getContentLengthLong()).isEqualTo(10);
+		assertThat(response.getHeader("Accept-Ranges")).isEqualTo("bytes");
+		assertThat(response.getContentAsString()).isEqualTo("0123456789");
+	}
+
+	@Test
+	void sendsTheRequestedRange() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/poster.jpg");
+		request.addHeader("Range", "bytes=2-4");
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-4/10");
+		assertThat(response.getContentLengthLong()).isEqualTo(3);
+		assertThat(response.getContentAsString()).isEqualTo("234");
+
+		request = new MockHttpServletRequest("GET", "/file/poster.jpg");
+		request.addHeader("Range", "bytes=-3");
+		assertThat(send(request).getContentAsString()).isEqualTo("789");
+	}
+
+	@Test
+	void rejectsARangePastTheEnd() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/poster.jpg");
+		request.addHeader("Range", "bytes=10-");
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getStatus()).isEqualTo(416);
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes */10");
+	}
+
+	@Test
+	void handsTheFileToTheServerWhenItSupportsSendfile() throws Exception {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/poster.jpg");
+		request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		request.addHeader("Range", "bytes=2-4");
+		MockHttpServletResponse response = send(request);
+
+		assertThat(response.getContentAsByteArray()).isEmpty();
+		assertThat(response.getContentLengthLong()).isEqualTo(3);
+		assertThat(request.getAttribute("org.apache.tomcat.sendfile.filename")).isEqualTo(poster.toRealPath().toString());
+		assertThat(request.getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(2L);
+		assertThat(request.getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(5L);
+	}
+
+	@Test
+	void sendsContentHeldInMemoryWithoutMovingTheBuffer() throws Exception {
+		ByteBuffer content = ByteBuffer.allocateDirect(10).put("0123456789".getBytes(StandardCharsets.US_ASCII)).flip();
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/file/poster.jpg");
+		request.addHeader("Range", "bytes=2-4");
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		FileTransfer.send(content.asReadOnlyBuffer(), "poster.jpg", request, response);
+
+		assertThat(response.getStatus()).isEqualTo(206);
+		assertThat(response.getContentType()).isEqualTo("image/jpeg");
+		assertThat(response.getHeader("Content-Range")).isEqualTo("bytes 2-4/10");
+		assertThat(response.getContentAsString()).isEqualTo("234");
+		assertThat(content.position()).isZero();
+		assertThat(content.remaining()).isEqualTo(10);
+	}
+
+	private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		FileTransfer.send(poster, request, response);
+		return response;
+	}
+}